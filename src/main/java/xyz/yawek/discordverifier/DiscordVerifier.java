@@ -29,20 +29,43 @@ import com.velocitypowered.api.plugin.annotation.DataDirectory;
 import com.velocitypowered.api.proxy.ProxyServer;
 import net.luckperms.api.LuckPerms;
 import net.luckperms.api.LuckPermsProvider;
+import net.luckperms.api.event.EventBus;
+import net.luckperms.api.event.track.TrackCreateEvent;
+import net.luckperms.api.event.track.TrackDeleteEvent;
+import net.luckperms.api.event.track.TrackLoadAllEvent;
+import net.luckperms.api.event.track.mutate.TrackMutateEvent;
 import org.slf4j.Logger;
 import xyz.yawek.discordverifier.command.CommandHandler;
 import xyz.yawek.discordverifier.config.Config;
 import xyz.yawek.discordverifier.config.ConfigProvider;
 import xyz.yawek.discordverifier.data.DataProvider;
+import xyz.yawek.discordverifier.discordlistener.MemberUpdateListener;
 import xyz.yawek.discordverifier.discordlistener.MessageReceivedListener;
+import xyz.yawek.discordverifier.discordlistener.RoleUpdateListener;
+import xyz.yawek.discordverifier.discordlistener.SlashCommandListener;
 import xyz.yawek.discordverifier.listener.LoginListener;
+import xyz.yawek.discordverifier.manager.BanList;
 import xyz.yawek.discordverifier.manager.DiscordManager;
-import xyz.yawek.discordverifier.manager.LuckPermsManager;
+import xyz.yawek.discordverifier.manager.GuildContext;
+import xyz.yawek.discordverifier.manager.LinkIndex;
+import xyz.yawek.discordverifier.manager.MemberSnapshot;
+import xyz.yawek.discordverifier.manager.OnlinePlayerIndex;
+import xyz.yawek.discordverifier.manager.PeriodicResync;
+import xyz.yawek.discordverifier.manager.Reconciler;
+import xyz.yawek.discordverifier.manager.ResyncQueue;
+import xyz.yawek.discordverifier.manager.SessionRegistry;
+import xyz.yawek.discordverifier.manager.SyncPipeline;
 import xyz.yawek.discordverifier.manager.VerifiableUserManager;
 import xyz.yawek.discordverifier.manager.VerificationManager;
+import xyz.yawek.discordverifier.role.RuleTable;
 import xyz.yawek.discordverifier.util.LogUtils;
+import xyz.yawek.discordverifier.util.Statistics;
 
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 @Plugin(
     id = "discordverifier",
@@ -71,6 +94,18 @@ public class DiscordVerifier {
     private DiscordManager discordManager;
     private VerifiableUserManager userManager;
     private VerificationManager verificationManager;
+    private OnlinePlayerIndex playerIndex;
+    private MemberSnapshot memberSnapshot;
+    private SyncPipeline syncPipeline;
+    private Reconciler reconciler;
+    private ResyncQueue resyncQueue;
+    private ResyncQueue loginQueue;
+    private PeriodicResync periodicResync;
+    private LoginListener loginListener;
+    private final LinkIndex linkIndex = new LinkIndex();
+    private final SessionRegistry sessionRegistry = new SessionRegistry();
+    private final BanList banList = new BanList(this);
+    private final Statistics statistics = new Statistics();
 
     @Inject
     public DiscordVerifier(ProxyServer server, Logger logger, @DataDirectory Path dataDirectory) {
@@ -90,39 +125,113 @@ public class DiscordVerifier {
         }
 
         plugin = this;
+        long startTime = System.nanoTime();
 
         this.configProvider = new ConfigProvider(this);
         configProvider.loadConfig();
         this.config = new Config(this, configProvider);
+        LogUtils.info("Config loaded in {} ms.", elapsedMillis(startTime));
 
         this.dataProvider = new DataProvider(this);
-        dataProvider.setup();
-
         this.userManager = new VerifiableUserManager(this);
+        this.verificationManager = new VerificationManager(this);
+        this.syncPipeline = new SyncPipeline(this);
+        this.reconciler = new Reconciler(this);
+        this.resyncQueue = new ResyncQueue(this, false, () -> config.resyncQueuePerSecond());
+        this.loginQueue = new ResyncQueue(this, true, () -> config.loginSyncPerSecond());
+        this.periodicResync = new PeriodicResync(this);
+
+        this.playerIndex = new OnlinePlayerIndex();
+        server.getAllPlayers().forEach(player -> playerIndex.add(player.getUsername()));
 
         this.discordManager = new DiscordManager(this);
-        if (discordManager.setup()) {
+        this.memberSnapshot = new MemberSnapshot(this);
+        boolean discordEnabled = discordManager.setup();
+        if (discordEnabled) memberSnapshot.load();
+
+        long databaseStartTime = System.nanoTime();
+        CompletableFuture<Void> linksLoaded = dataProvider.setupAsync().thenRun(() -> {
+            LogUtils.info("Database connected in {} ms.", elapsedMillis(databaseStartTime));
+            linkIndex.load(dataProvider.getLinkedAccounts());
+        });
+        linksLoaded.exceptionally(throwable -> {
+            LogUtils.errorDataAccess("Unable to load linked accounts, use /discord reload to try again.");
+            throwable.printStackTrace();
+            return null;
+        });
+        statistics.registerGauge("index.linked-accounts", linkIndex::size);
+        statistics.registerGauge("index.banned-players", banList::size);
+        statistics.registerGauge("index.sessions", sessionRegistry::size);
+        statistics.registerGauge("snapshot.age-seconds", memberSnapshot::getAge);
+        statistics.registerGauge("sync.queued", resyncQueue::size);
+        statistics.registerGauge("login.deferred-syncs", loginQueue::size);
+        statistics.registerGauge("sync.pending-requests", syncPipeline::getPendingRequests);
+        statistics.registerGauge("sync.sequenced-users", syncPipeline::getSequencedUsers);
+        statistics.registerGauge("sync.periodic-deferred", periodicResync::getDeferred);
+        resyncQueue.schedule();
+        loginQueue.schedule();
+
+        if (discordEnabled) {
             discordManager.addEventListener(new MessageReceivedListener(this));
-            new LuckPermsManager(this).reloadPerms();
-        }
+            discordManager.addEventListener(new MemberUpdateListener(this));
+            discordManager.addEventListener(new RoleUpdateListener(this));
+            discordManager.addEventListener(new SlashCommandListener(this));
+            discordManager.whenReady(() -> linksLoaded.thenRun(() -> {
+                discordManager.getGuilds().forEach(GuildContext::rebuildIndexes);
+                reconciler.resume();
+            }));
+            memberSnapshot.schedule();
+            periodicResync.schedule();
 
-        this.verificationManager = new VerificationManager(this);
+            EventBus eventBus = luckPerms.getEventBus();
+            eventBus.subscribe(this, TrackCreateEvent.class, e -> discordManager.compileRules());
+            eventBus.subscribe(this, TrackDeleteEvent.class, e -> discordManager.compileRules());
+            eventBus.subscribe(this, TrackMutateEvent.class, e -> discordManager.compileRules());
+            eventBus.subscribe(this, TrackLoadAllEvent.class, e -> discordManager.compileRules());
+        }
 
-        server.getEventManager().register(this, new LoginListener(this));
+        this.loginListener = new LoginListener(this);
+        server.getEventManager().register(this, loginListener);
 
         CommandMeta meta = server.getCommandManager()
                 .metaBuilder("discord").build();
         server.getCommandManager().register(meta, new CommandHandler(this));
+        LogUtils.info("Initialized in {} ms, connecting to Discord in the background.",
+                elapsedMillis(startTime));
+    }
+
+    private static String elapsedMillis(long startTime) {
+        return String.valueOf(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
     }
 
     public void reload() {
+        List<String> previousPermissions = config.verificationPermissions();
+        Map<Long, RuleTable> previousRules = discordManager.getRules();
+
         configProvider.loadConfig();
-        dataProvider.setup();
+        config.load();
+        discordManager.reloadGuilds();
+        discordManager.compileRules();
+        resyncQueue.enqueueChanges(previousRules, previousPermissions);
+        discordManager.getGuilds().forEach(GuildContext::refreshBans);
+        discordManager.getRateLimiter().clear();
+        dataProvider.setupAsync().thenRun(() ->
+                discordManager.updateLinks(linkIndex.load(dataProvider.getLinkedAccounts())))
+                .exceptionally(throwable -> {
+                    LogUtils.errorDataAccess("Unable to reload linked accounts, the previously " +
+                            "loaded ones are still used.");
+                    throwable.printStackTrace();
+                    return null;
+                });
     }
 
     @SuppressWarnings("unused")
     @Subscribe
     public void onShutdown(ProxyShutdownEvent e) {
+        reconciler.shutdown();
+        syncPipeline.shutdown();
+        loginListener.shutdown();
+        memberSnapshot.save();
         dataProvider.shutdown();
         discordManager.shutdown();
     }
@@ -167,4 +276,44 @@ public class DiscordVerifier {
         return verificationManager;
     }
 
+    public OnlinePlayerIndex getPlayerIndex() {
+        return playerIndex;
+    }
+
+    public LinkIndex getLinkIndex() {
+        return linkIndex;
+    }
+
+    public SessionRegistry getSessionRegistry() {
+        return sessionRegistry;
+    }
+
+    public BanList getBanList() {
+        return banList;
+    }
+
+    public SyncPipeline getSyncPipeline() {
+        return syncPipeline;
+    }
+
+    public Reconciler getReconciler() {
+        return reconciler;
+    }
+
+    public ResyncQueue getResyncQueue() {
+        return resyncQueue;
+    }
+
+    public ResyncQueue getLoginQueue() {
+        return loginQueue;
+    }
+
+    public MemberSnapshot getMemberSnapshot() {
+        return memberSnapshot;
+    }
+
+    public Statistics getStatistics() {
+        return statistics;
+    }
+
 }
@@ -40,6 +40,8 @@ public class CommandHandler implements SimpleCommand {
         commandMap.put("accept", new AcceptCommand(verifier));
         commandMap.put("deny", new DenyCommand(verifier));
         commandMap.put("unlink", new UnlinkCommand(verifier));
+        commandMap.put("stats", new StatsCommand(verifier));
+        commandMap.put("sync", new SyncCommand(verifier));
     }
 
     @Override
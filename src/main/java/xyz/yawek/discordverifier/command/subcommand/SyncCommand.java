@@ -0,0 +1,81 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.command.subcommand;
+
+import com.velocitypowered.api.command.CommandSource;
+import org.jetbrains.annotations.NotNull;
+import xyz.yawek.discordverifier.DiscordVerifier;
+import xyz.yawek.discordverifier.command.PermissibleCommand;
+import xyz.yawek.discordverifier.config.Config;
+import xyz.yawek.discordverifier.manager.Reconciler;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class SyncCommand extends PermissibleCommand {
+
+    public SyncCommand(DiscordVerifier verifier) {
+        super(verifier, "discordverifier.sync");
+    }
+
+    @Override
+    protected void handle(CommandSource source, String[] args) {
+        Config config = verifier.getConfig();
+        Reconciler reconciler = verifier.getReconciler();
+
+        if (args.length < 1) {
+            source.sendMessage(config.syncCommandUsage());
+            return;
+        }
+        switch (args[0].toLowerCase()) {
+            case "all" -> {
+                if (!verifier.getDiscordManager().isConnected()) {
+                    source.sendMessage(config.syncNotConnected());
+                } else if (!verifier.getLinkIndex().isLoaded()) {
+                    source.sendMessage(config.syncNotLoaded());
+                } else if (!reconciler.start(source)) {
+                    source.sendMessage(config.syncAlreadyRunning());
+                }
+            }
+            case "status" -> {
+                if (!reconciler.isRunning()) {
+                    source.sendMessage(config.syncNotRunning());
+                    return;
+                }
+                int total = reconciler.getTotal();
+                int completed = reconciler.getCompleted();
+                source.sendMessage(config.syncProgress(completed, total,
+                        total == 0 ? 100 : (int) (completed * 100L / total)));
+            }
+            case "stop" -> source.sendMessage(reconciler.stop()
+                    ? config.syncStopped() : config.syncNotRunning());
+            default -> source.sendMessage(config.syncCommandUsage());
+        }
+    }
+
+    @Override
+    protected @NotNull List<String> handleSuggestion(CommandSource source, String[] args) {
+        if (args.length != 1) return Collections.emptyList();
+        return Stream.of("all", "status", "stop")
+                .filter(argument -> argument.startsWith(args[0].toLowerCase()))
+                .toList();
+    }
+
+}
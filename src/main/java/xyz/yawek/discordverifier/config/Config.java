@@ -18,27 +18,59 @@
 
 package xyz.yawek.discordverifier.config;
 
-import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.entities.MessageEmbed;
-import net.dv8tion.jda.api.entities.Role;
 import net.kyori.adventure.text.Component;
 import xyz.yawek.discordverifier.DiscordVerifier;
-import xyz.yawek.discordverifier.role.GroupRole;
-import xyz.yawek.discordverifier.role.RoleGroup;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class Config {
 
     private final DiscordVerifier verifier;
     private final ConfigProvider configProvider;
     private final ConfigUtils configUtils;
+    private volatile Map<String, EmbedTemplate> embedTemplates = Collections.emptyMap();
+    private volatile Map<Long, GuildSettings> guildSettings = Collections.emptyMap();
+    private volatile int version;
 
     public Config(DiscordVerifier verifier, ConfigProvider configProvider) {
         this.verifier = verifier;
         this.configProvider = configProvider;
         this.configUtils = new ConfigUtils(configProvider);
+        load();
+    }
+
+    public void load() {
+        Map<String, EmbedTemplate> templates = new HashMap<>();
+        LinkedHashMap<String, ?> discordMessages = configProvider.getMap("messages.discord");
+        if (discordMessages != null) {
+            discordMessages.forEach((name, section) -> {
+                if (section instanceof Map<?, ?> sectionMap && sectionMap.containsKey("title"))
+                    templates.put(name, EmbedTemplate.compile(sectionMap));
+            });
+        }
+        this.embedTemplates = Map.copyOf(templates);
+
+        Map<Long, GuildSettings> guilds = new LinkedHashMap<>();
+        GuildSettings.parseId(guildId()).ifPresent(id -> guilds.put(id, new GuildSettings(id,
+                channelId(),
+                GuildSettings.stringMap(configProvider.getMap("discord.sync.group.roles")),
+                GuildSettings.stringMap(configProvider.getMap("discord.sync.group.groups")),
+                GuildSettings.stringList(configProvider.getStringList("discord.banned-roles")))));
+        Map<?, ?> additionalGuilds = configProvider.getMap("discord.guilds");
+        if (additionalGuilds != null) {
+            additionalGuilds.forEach((id, section) -> {
+                if (!(section instanceof Map<?, ?> sectionMap)) return;
+                GuildSettings.parseId(id).ifPresent(guildId ->
+                        guilds.putIfAbsent(guildId, GuildSettings.fromSection(guildId, sectionMap)));
+            });
+        }
+        this.guildSettings = Collections.unmodifiableMap(guilds);
+        this.version++;
+    }
+
+    public int version() {
+        return version;
     }
 
     public boolean useMySQL() {
@@ -74,6 +106,14 @@ public class Config {
         return configProvider.getString("discord.token");
     }
 
+    public String discordApiUrl() {
+        return configProvider.getString("discord.api-url");
+    }
+
+    public String discordGatewayUrl() {
+        return configProvider.getString("discord.gateway-url");
+    }
+
     public String guildId() {
         return configProvider.getString("discord.guild-id");
     }
@@ -82,10 +122,103 @@ public class Config {
         return configProvider.getString("discord.channel-id");
     }
 
+    public boolean hasGuildList() {
+        Map<?, ?> additionalGuilds = configProvider.getMap("discord.guilds");
+        return additionalGuilds != null && !additionalGuilds.isEmpty();
+    }
+
+    public boolean messageCommandsEnabled() {
+        return configProvider.getBoolean("discord.message-commands");
+    }
+
     public int messageDeleteDelay() {
         return configProvider.getInt("discord.delete-message-after");
     }
 
+    public int memberCacheSize() {
+        return configProvider.getInt("discord.member-cache.size");
+    }
+
+    public int memberCacheExpireTime() {
+        return configProvider.getInt("discord.member-cache.expire-after");
+    }
+
+    public int eventWorkerThreads() {
+        return configProvider.getInt("discord.event-workers.threads");
+    }
+
+    public int eventWorkerQueueSize() {
+        return configProvider.getInt("discord.event-workers.queue-size");
+    }
+
+    public int memberRateLimitCapacity() {
+        return configProvider.getInt("discord.rate-limit.member.capacity");
+    }
+
+    public double memberRateLimitRefill() {
+        return configProvider.getDouble("discord.rate-limit.member.refill-per-second");
+    }
+
+    public int channelRateLimitCapacity() {
+        return configProvider.getInt("discord.rate-limit.channel.capacity");
+    }
+
+    public double channelRateLimitRefill() {
+        return configProvider.getDouble("discord.rate-limit.channel.refill-per-second");
+    }
+
+    public boolean denyLoginsUntilReady() {
+        return configProvider.getBoolean("discord.deny-logins-until-ready");
+    }
+
+    public int reconcileConcurrency() {
+        return configProvider.getInt("discord.sync.reconcile.concurrency");
+    }
+
+    public double reconcileRestPerSecond() {
+        return configProvider.getDouble("discord.sync.reconcile.rest-per-second");
+    }
+
+    public int resyncQueuePerSecond() {
+        return configProvider.getInt("discord.sync.reconcile.queue-per-second");
+    }
+
+    public long syncDebounceDelay() {
+        return configProvider.getInt("discord.sync.debounce.delay");
+    }
+
+    public long syncDebounceMaxDelay() {
+        return configProvider.getInt("discord.sync.debounce.max-delay");
+    }
+
+    public int periodicSyncPeriod() {
+        return configProvider.getInt("discord.sync.periodic.period");
+    }
+
+    public int periodicSyncMaxPerSecond() {
+        return configProvider.getInt("discord.sync.periodic.max-per-second");
+    }
+
+    public boolean requireLink() {
+        return configProvider.getBoolean("discord.require-link");
+    }
+
+    public int loginAdmissionConcurrency() {
+        return configProvider.getInt("discord.login-admission.concurrency");
+    }
+
+    public int loginAdmissionQueueSize() {
+        return configProvider.getInt("discord.login-admission.queue-size");
+    }
+
+    public int loginSyncPerSecond() {
+        return configProvider.getInt("discord.login-admission.sync-per-second");
+    }
+
+    public int loginDeadline() {
+        return configProvider.getInt("discord.login-deadline");
+    }
+
     public int verificationExpireTime() {
         return configProvider.getInt("discord.verification-expire-time");
     }
@@ -114,57 +247,22 @@ public class Config {
         return configProvider.getBoolean("discord.sync.nickname.discord-to-minecraft");
     }
 
-    @SuppressWarnings("unchecked")
-    public LinkedHashMap<String, String> groupsRoles() {
-        return (LinkedHashMap<String, String>) configProvider.getMap("discord.sync.group.roles");
-    }
-
-    @SuppressWarnings("unchecked")
-    public LinkedHashMap<String, String> rolesGroups() {
-        return (LinkedHashMap<String, String>) configProvider.getMap("discord.sync.group.groups");
+    public Map<String, String> trackDefaultGroups() {
+        return GuildSettings.stringMap(configProvider.getMap("discord.sync.group.track-default-groups"));
     }
 
-    @SuppressWarnings("unchecked")
-    public LinkedHashMap<String, String> trackDefaultGroupsMap() {
-        return (LinkedHashMap<String, String>) configProvider.getMap("discord.sync.group.track-default-groups");
+    public Collection<GuildSettings> guilds() {
+        return guildSettings.values();
     }
 
-    public String trackDefaultGroup(String trackName) {
-        return trackDefaultGroupsMap().getOrDefault(trackName, null);
-    }
-
-    public Set<GroupRole> groupsRolesSet() {
-        LinkedHashMap<String, String> groupsRoles = this.groupsRoles();
-        if (groupsRoles == null) return Collections.emptySet();
-        return groupsRoles.entrySet()
-                .stream().map(entry -> {
-                    Optional<Role> roleOptional =
-                            this.verifier.getDiscordManager().getRole(entry.getValue());
-                    return roleOptional.map(role -> new GroupRole(entry.getKey(), role)).orElse(null);
-                }).filter(Objects::nonNull)
-                .collect(Collectors.toCollection(TreeSet::new));
-    }
-
-    public Set<RoleGroup> rolesGroupsSet() {
-        LinkedHashMap<String, String> rolesGroups = this.rolesGroups();
-        if (rolesGroups == null) return Collections.emptySet();
-        return rolesGroups.entrySet()
-                .stream().map(entry -> {
-                    Optional<Role> roleOptional =
-                            this.verifier.getDiscordManager().getRole(entry.getKey());
-                    return roleOptional.map(role -> new RoleGroup(entry.getValue(), role)).orElse(null);
-                }).filter(Objects::nonNull)
-                .collect(Collectors.toCollection(TreeSet::new));
+    public Optional<GuildSettings> guild(long guildId) {
+        return Optional.ofNullable(guildSettings.get(guildId));
     }
 
     public List<String> verificationPermissions() {
         return configProvider.getStringList("discord.sync.group.verification-permissions");
     }
 
-    public List<String> bannedDiscordRoles() {
-        return configProvider.getStringList("discord.banned-roles");
-    }
-
     // Kick messages
 
     public Component unlinkKicked() {
@@ -179,6 +277,14 @@ public class Config {
         return configUtils.noPrefixMessage("messages.kick.discord-banned-join");
     }
 
+    public Component notLinked(String code) {
+        return configUtils.noPrefixMessage("messages.kick.not-linked", code);
+    }
+
+    public Component discordNotReady() {
+        return configUtils.noPrefixMessage("messages.kick.discord-not-ready");
+    }
+
     // Chat messages
 
     public Component noPermission() {
@@ -250,83 +356,125 @@ public class Config {
         return configUtils.prefixedMessage("messages.chat.config-reloaded");
     }
 
+    public Component syncCommandUsage() {
+        return configUtils.prefixedMessage("messages.chat.sync-command-usage");
+    }
+
+    public Component syncStarted(int remaining, int total) {
+        return configUtils.prefixedMessage("messages.chat.sync-started",
+                String.valueOf(remaining), String.valueOf(total));
+    }
+
+    public Component syncProgress(int completed, int total, int percent) {
+        return configUtils.prefixedMessage("messages.chat.sync-progress",
+                String.valueOf(completed), String.valueOf(total), String.valueOf(percent));
+    }
+
+    public Component syncFinished(int count, long seconds) {
+        return configUtils.prefixedMessage("messages.chat.sync-finished",
+                String.valueOf(count), String.valueOf(seconds));
+    }
+
+    public Component syncAlreadyRunning() {
+        return configUtils.prefixedMessage("messages.chat.sync-already-running");
+    }
+
+    public Component syncNotRunning() {
+        return configUtils.prefixedMessage("messages.chat.sync-not-running");
+    }
+
+    public Component syncStopped() {
+        return configUtils.prefixedMessage("messages.chat.sync-stopped");
+    }
+
+    public Component syncNotConnected() {
+        return configUtils.prefixedMessage("messages.chat.sync-not-connected");
+    }
+
+    public Component syncNotLoaded() {
+        return configUtils.prefixedMessage("messages.chat.sync-not-loaded");
+    }
+
+    public Component statistics(Map<String, Long> values) {
+        return configUtils.prefixedLines("messages.chat.statistics",
+                "messages.chat.statistics-entry",
+                values.entrySet().stream()
+                        .map(entry -> new String[]{entry.getKey(), String.valueOf(entry.getValue())})
+                        .toList());
+    }
+
+    // Discord commands
+
+    public String linkCommandDescription() {
+        return configProvider.getString("messages.discord.commands.link");
+    }
+
+    public String nicknameOptionDescription() {
+        return configProvider.getString("messages.discord.commands.link-nickname");
+    }
+
+    public String codeOptionDescription() {
+        return configProvider.getString("messages.discord.commands.link-code");
+    }
+
+    public String unlinkCommandDescription() {
+        return configProvider.getString("messages.discord.commands.unlink");
+    }
+
     // Discord messages
 
     public MessageEmbed playerNotFound(String nickname) {
-        return new EmbedBuilder()
-                .setTitle(configUtils.stringWithArgs(
-                        "messages.discord.player-not-found.title", nickname))
-                .setDescription(configUtils.stringWithArgs(
-                        "messages.discord.player-not-found.body", nickname))
-                .setFooter(configUtils.stringWithArgs(
-                        "messages.discord.player-not-found.footer", nickname))
-                .build();
+        return embed("player-not-found", nickname);
     }
 
     public MessageEmbed playerAlreadyVerified(String nickname) {
-        return new EmbedBuilder()
-                .setTitle(configUtils.stringWithArgs(
-                        "messages.discord.player-already-verified.title", nickname))
-                .setDescription(configUtils.stringWithArgs(
-                        "messages.discord.player-already-verified.body", nickname))
-                .setFooter(configUtils.stringWithArgs(
-                        "messages.discord.player-already-verified.footer", nickname))
-                .build();
+        return embed("player-already-verified", nickname);
     }
 
     public MessageEmbed discordAlreadyVerified() {
-        return new EmbedBuilder()
-                .setTitle(configUtils.stringWithArgs(
-                        "messages.discord.discord-already-verified.title"))
-                .setDescription(configUtils.stringWithArgs(
-                        "messages.discord.discord-already-verified.body"))
-                .setFooter(configUtils.stringWithArgs(
-                        "messages.discord.discord-already-verified.footer"))
-                .build();
+        return embed("discord-already-verified");
+    }
+
+    public MessageEmbed discordNotVerified() {
+        return embed("discord-not-verified");
+    }
+
+    public MessageEmbed verificationAlreadyRequested() {
+        return embed("verification-already-requested");
+    }
+
+    public MessageEmbed rateLimited() {
+        return embed("rate-limited");
+    }
+
+    public MessageEmbed linkCodeInvalid() {
+        return embed("link-code-invalid");
+    }
+
+    public MessageEmbed linkCodeAttempts() {
+        return embed("link-code-attempts");
     }
 
     public MessageEmbed verificationAccepted(String nickname) {
-        return new EmbedBuilder()
-                .setTitle(configUtils.stringWithArgs(
-                        "messages.discord.verification-accepted.title", nickname))
-                .setDescription(configUtils.stringWithArgs(
-                        "messages.discord.verification-accepted.body", nickname))
-                .setFooter(configUtils.stringWithArgs(
-                        "messages.discord.verification-accepted.footer", nickname))
-                .build();
+        return embed("verification-accepted", nickname);
     }
 
     public MessageEmbed verificationDenied(String nickname) {
-        return new EmbedBuilder()
-                .setTitle(configUtils.stringWithArgs(
-                        "messages.discord.verification-denied.title", nickname))
-                .setDescription(configUtils.stringWithArgs(
-                        "messages.discord.verification-denied.body", nickname))
-                .setFooter(configUtils.stringWithArgs(
-                        "messages.discord.verification-denied.footer", nickname))
-                .build();
+        return embed("verification-denied", nickname);
     }
 
     public MessageEmbed verificationSuccess() {
-        return new EmbedBuilder()
-                .setTitle(configProvider.getString(
-                        "messages.discord.verification-success.title"))
-                .setDescription(configProvider.getString(
-                        "messages.discord.verification-success.body"))
-                .setFooter(configProvider.getString(
-                        "messages.discord.verification-success.footer"))
-                .build();
+        return embed("verification-success");
     }
 
     public MessageEmbed verificationUnlinked() {
-        return new EmbedBuilder()
-                .setTitle(configProvider.getString(
-                        "messages.discord.unlink-success.title"))
-                .setDescription(configProvider.getString(
-                        "messages.discord.unlink-success.body"))
-                .setFooter(configProvider.getString(
-                        "messages.discord.unlink-success.footer"))
-                .build();
+        return embed("unlink-success");
+    }
+
+    private MessageEmbed embed(String name, String... arguments) {
+        EmbedTemplate template = embedTemplates.get(name);
+        if (template == null) throw new IllegalStateException("Missing Discord message " + name + ".");
+        return template.render(arguments);
     }
 
 }
@@ -108,6 +108,11 @@ public class ConfigProvider {
         return value != null ? (int) value : -1;
     }
 
+    protected double getDouble(String key) {
+        Object value = getValue(key);
+        return value instanceof Number number ? number.doubleValue() : -1;
+    }
+
     protected boolean getBoolean(String key) {
         Object value = getValue(key);
         return value != null && (boolean) value;
@@ -21,6 +21,8 @@ package xyz.yawek.discordverifier.config;
 import net.kyori.adventure.text.Component;
 import xyz.yawek.discordverifier.util.ColorUtils;
 
+import java.util.List;
+
 public class ConfigUtils {
 
     private final ConfigProvider configProvider;
@@ -52,12 +54,25 @@ public class ConfigUtils {
                 configProvider.getString("messages.chat.prefix") + message));
     }
 
+    public Component prefixedLines(String key, String lineKey, List<String[]> lines) {
+        StringBuilder message = new StringBuilder(configProvider.getString("messages.chat.prefix"))
+                .append(configProvider.getString(key));
+        for (String[] arguments : lines) {
+            message.append("\n").append(stringWithArgs(lineKey, arguments));
+        }
+        return ColorUtils.decorate(Component.text(message.toString()));
+    }
+
     public Component noPrefixMessage(String key) {
         String message = configProvider.getString(key);
         if (message == null) return null;
         return ColorUtils.decorate(Component.text(message));
     }
 
+    public Component noPrefixMessage(String key, String... arguments) {
+        return ColorUtils.decorate(Component.text(stringWithArgs(key, arguments)));
+    }
+
     public Component listPrefixedMessage(String key) {
         return ColorUtils.decorate(Component.text(
                 configProvider.getString("messages.chat.prefix")
@@ -0,0 +1,81 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.config;
+
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+
+import java.util.Map;
+
+public final class EmbedTemplate {
+
+    private final MessageTemplate title;
+    private final MessageTemplate description;
+    private final MessageTemplate footer;
+    private final MessageEmbed staticEmbed;
+
+    private EmbedTemplate(MessageTemplate title, MessageTemplate description, MessageTemplate footer) {
+        this.title = title;
+        this.description = description;
+        this.footer = footer;
+        this.staticEmbed = hasPlaceholders(title) || hasPlaceholders(description)
+                || hasPlaceholders(footer) ? null : tryBuild();
+    }
+
+    public static EmbedTemplate compile(Map<?, ?> section) {
+        return new EmbedTemplate(
+                compileValue(section.get("title")),
+                compileValue(section.get("body")),
+                compileValue(section.get("footer")));
+    }
+
+    public MessageEmbed render(String... arguments) {
+        if (staticEmbed != null) return staticEmbed;
+        return new EmbedBuilder()
+                .setTitle(format(title, arguments))
+                .setDescription(format(description, arguments))
+                .setFooter(format(footer, arguments))
+                .build();
+    }
+
+    private MessageEmbed tryBuild() {
+        try {
+            EmbedBuilder builder = new EmbedBuilder()
+                    .setTitle(format(title))
+                    .setDescription(format(description))
+                    .setFooter(format(footer));
+            return builder.isEmpty() ? null : builder.build();
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return null;
+        }
+    }
+
+    private static String format(MessageTemplate template, String... arguments) {
+        return template != null ? template.format(arguments) : null;
+    }
+
+    private static boolean hasPlaceholders(MessageTemplate template) {
+        return template != null && template.hasPlaceholders();
+    }
+
+    private static MessageTemplate compileValue(Object value) {
+        return value != null ? MessageTemplate.compile(String.valueOf(value)) : null;
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.config;
+
+import java.util.*;
+
+public class GuildSettings {
+
+    private final long guildId;
+    private final String channelId;
+    private final Map<String, String> groupsRoles;
+    private final Map<String, String> rolesGroups;
+    private final Set<String> bannedRoles;
+
+    public GuildSettings(long guildId, String channelId, Map<String, String> groupsRoles,
+                         Map<String, String> rolesGroups, List<String> bannedRoles) {
+        this.guildId = guildId;
+        this.channelId = channelId;
+        this.groupsRoles = Collections.unmodifiableMap(new LinkedHashMap<>(groupsRoles));
+        this.rolesGroups = Collections.unmodifiableMap(new LinkedHashMap<>(rolesGroups));
+        this.bannedRoles = Set.copyOf(bannedRoles);
+    }
+
+    public static GuildSettings fromSection(long guildId, Map<?, ?> section) {
+        return new GuildSettings(guildId,
+                stringValue(section.get("channel-id")),
+                stringMap(section.get("roles")),
+                stringMap(section.get("groups")),
+                stringList(section.get("banned-roles")));
+    }
+
+    public static Optional<Long> parseId(Object id) {
+        if (id == null) return Optional.empty();
+        try {
+            return Optional.of(Long.parseLong(String.valueOf(id)));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    static String stringValue(Object value) {
+        return value != null ? String.valueOf(value) : null;
+    }
+
+    static Map<String, String> stringMap(Object value) {
+        if (!(value instanceof Map<?, ?> map)) return Collections.emptyMap();
+        Map<String, String> result = new LinkedHashMap<>();
+        map.forEach((key, entryValue) -> {
+            if (key != null && entryValue != null)
+                result.put(String.valueOf(key), String.valueOf(entryValue));
+        });
+        return result;
+    }
+
+    static List<String> stringList(Object value) {
+        if (!(value instanceof Collection<?> collection)) return Collections.emptyList();
+        return collection.stream().filter(Objects::nonNull).map(String::valueOf).toList();
+    }
+
+    public long getGuildId() {
+        return guildId;
+    }
+
+    public String getChannelId() {
+        return channelId;
+    }
+
+    public Map<String, String> getGroupsRoles() {
+        return groupsRoles;
+    }
+
+    public Map<String, String> getRolesGroups() {
+        return rolesGroups;
+    }
+
+    public Set<String> getBannedRoles() {
+        return bannedRoles;
+    }
+
+}
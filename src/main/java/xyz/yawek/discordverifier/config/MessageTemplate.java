@@ -0,0 +1,67 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class MessageTemplate {
+
+    private static final String PLACEHOLDER = "{}";
+
+    private final String[] parts;
+    private final int literalLength;
+
+    private MessageTemplate(String[] parts, int literalLength) {
+        this.parts = parts;
+        this.literalLength = literalLength;
+    }
+
+    public static MessageTemplate compile(String message) {
+        if (message == null) return null;
+
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        int index;
+        while ((index = message.indexOf(PLACEHOLDER, start)) != -1) {
+            parts.add(message.substring(start, index));
+            start = index + PLACEHOLDER.length();
+        }
+        parts.add(message.substring(start));
+        return new MessageTemplate(parts.toArray(new String[0]),
+                message.length() - (parts.size() - 1) * PLACEHOLDER.length());
+    }
+
+    public boolean hasPlaceholders() {
+        return parts.length > 1;
+    }
+
+    public String format(String... arguments) {
+        if (parts.length == 1) return parts[0];
+
+        StringBuilder builder = new StringBuilder(literalLength + 16 * (parts.length - 1));
+        builder.append(parts[0]);
+        for (int i = 1; i < parts.length; i++) {
+            builder.append(i <= arguments.length ? arguments[i - 1] : PLACEHOLDER);
+            builder.append(parts[i]);
+        }
+        return builder.toString();
+    }
+
+}
@@ -18,6 +18,7 @@
 
 package xyz.yawek.discordverifier.data;
 
+import java.util.Map;
 import java.util.UUID;
 
 public interface DataAccess {
@@ -48,4 +49,6 @@ public interface DataAccess {
 
      void createOrUpdatePlayerData(UUID uuid, String nickname);
 
+     Map<String, String> getLinkedAccounts();
+
 }
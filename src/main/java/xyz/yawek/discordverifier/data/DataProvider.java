@@ -21,67 +21,95 @@ package xyz.yawek.discordverifier.data;
 import xyz.yawek.discordverifier.DiscordVerifier;
 import xyz.yawek.discordverifier.user.VerifiableUser;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 public class DataProvider {
 
     private final DiscordVerifier verifier;
-    private DataAccess dataAccess;
+    private volatile DataAccess dataAccess;
+    private volatile CompletableFuture<Void> setupFuture = CompletableFuture.completedFuture(null);
 
     public DataProvider(DiscordVerifier verifier) {
         this.verifier = verifier;
     }
 
-    public void setup() {
-        if (dataAccess != null) dataAccess.closeDatabaseConnection();
-        dataAccess = verifier.getConfig().useMySQL()
+    public synchronized void setup() {
+        // The new connection is opened before it is published, so callers keep using the previous
+        // one until the new one is ready.
+        DataAccess newAccess = verifier.getConfig().useMySQL()
                 ? new MySQLDataAccess(verifier) : new SQLiteDataAccess(verifier);
-        dataAccess.openDatabaseConnection();
+        newAccess.openDatabaseConnection();
+        DataAccess previousAccess = dataAccess;
+        dataAccess = newAccess;
+        if (previousAccess != null) previousAccess.closeDatabaseConnection();
+    }
+
+    public CompletableFuture<Void> setupAsync() {
+        setupFuture = CompletableFuture.runAsync(this::setup);
+        return setupFuture;
     }
 
     public void shutdown() {
-        dataAccess.closeDatabaseConnection();
+        DataAccess currentAccess = dataAccess;
+        if (currentAccess != null) currentAccess.closeDatabaseConnection();
+    }
+
+    private DataAccess access() {
+        DataAccess currentAccess = dataAccess;
+        if (currentAccess != null) return currentAccess;
+        setupFuture.join();
+        return dataAccess;
     }
 
     public Optional<String> getNickname(UUID uuid) {
-        String nickname = dataAccess.getNickname(uuid);
+        String nickname = access().getNickname(uuid);
         if (nickname == null) return Optional.empty();
         return Optional.of(nickname);
     }
 
     public Optional<UUID> getUUID(String nickname) {
-        String uuidString = dataAccess.getUUID(nickname);
+        String uuidString = access().getUUID(nickname);
         if (uuidString == null) return Optional.empty();
         return Optional.of(UUID.fromString(uuidString));
     }
 
     public Optional<UUID> getUUIDByDiscordId(String discordId) {
-        String uuidString = dataAccess.getUUIDByDiscordId(discordId);
+        String uuidString = access().getUUIDByDiscordId(discordId);
         if (uuidString == null) return Optional.empty();
         return Optional.of(UUID.fromString(uuidString));
     }
 
     public boolean isVerified(UUID uuid) {
-        return dataAccess.isVerified(uuid);
+        return access().isVerified(uuid);
     }
 
     public Optional<String> getDiscordId(UUID uuid) {
-        String discordId = dataAccess.getDiscordId(uuid);
+        String discordId = access().getDiscordId(uuid);
         if (discordId == null) return Optional.empty();
         return Optional.of(discordId);
     }
 
+    public Map<String, UUID> getLinkedAccounts() {
+        Map<String, UUID> linkedAccounts = new HashMap<>();
+        access().getLinkedAccounts().forEach((discordId, uuid) ->
+                linkedAccounts.put(discordId, UUID.fromString(uuid)));
+        return linkedAccounts;
+    }
+
     public void updateUserIdentity(UUID uuid, String nickname) {
-        dataAccess.createOrUpdatePlayerData(uuid, nickname);
+        access().createOrUpdatePlayerData(uuid, nickname);
     }
 
     public void updateUser(VerifiableUser user) {
         UUID uuid = user.getUUID();
-        user.getLastNickname().ifPresent(s -> dataAccess.setNickname(uuid, s));
-        dataAccess.setVerified(uuid, user.isVerified());
-        user.getDiscordId().ifPresent(s -> dataAccess.setDiscordId(uuid, s));
-        dataAccess.setVerified(uuid, user.isVerified());
+        user.getLastNickname().ifPresent(s -> access().setNickname(uuid, s));
+        access().setVerified(uuid, user.isVerified());
+        user.getDiscordId().ifPresent(s -> access().setDiscordId(uuid, s));
+        access().setVerified(uuid, user.isVerified());
     }
 
 }
@@ -24,6 +24,8 @@ import xyz.yawek.discordverifier.config.Config;
 import xyz.yawek.discordverifier.util.LogUtils;
 
 import java.sql.*;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 
 public class MySQLDataAccess implements DataAccess {
@@ -253,6 +255,23 @@ public class MySQLDataAccess implements DataAccess {
         }
     }
 
+    @Override
+    public Map<String, String> getLinkedAccounts() {
+        Map<String, String> linkedAccounts = new HashMap<>();
+        try (Connection connection = hikari.getConnection()) {
+            String sql = "SELECT discord_id, uuid FROM players WHERE verified = 1 AND discord_id IS NOT NULL";
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+            preparedStatement.execute();
+            ResultSet resultSet = preparedStatement.getResultSet();
+            while (resultSet.next()) {
+                linkedAccounts.put(resultSet.getString(1), resultSet.getString(2));
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to get linked accounts.", e);
+        }
+        return linkedAccounts;
+    }
+
     private boolean recordExists(String tableName, String recordName, String recordValue) {
         try (Connection connection = hikari.getConnection()) {
             String query = "SELECT * FROM " + tableName + " WHERE " + recordName + " = \"" + recordValue + "\"";
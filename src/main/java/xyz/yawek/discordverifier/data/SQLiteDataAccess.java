@@ -25,6 +25,8 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.sql.*;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 
 public class SQLiteDataAccess implements DataAccess {
@@ -250,6 +252,21 @@ public class SQLiteDataAccess implements DataAccess {
         }
     }
 
+    @Override
+    public Map<String, String> getLinkedAccounts() {
+        Map<String, String> linkedAccounts = new HashMap<>();
+        try (PreparedStatement preparedStatement = connection.prepareStatement(
+                "SELECT discord_id, uuid FROM players WHERE verified = 1 AND discord_id IS NOT NULL")) {
+            ResultSet resultSet = preparedStatement.executeQuery();
+            while (resultSet.next()) {
+                linkedAccounts.put(resultSet.getString(1), resultSet.getString(2));
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to get linked accounts.", e);
+        }
+        return linkedAccounts;
+    }
+
     private boolean recordExists(String tableName, String recordName, String recordValue) {
         try (Statement statement = connection.createStatement()) {
             String query = "SELECT * FROM " + tableName + " WHERE " + recordName + " = \"" + recordValue + "\"";
@@ -0,0 +1,98 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.discordlistener;
+
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.events.guild.GuildBanEvent;
+import net.dv8tion.jda.api.events.guild.GuildUnbanEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberJoinEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRemoveEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRoleAddEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRoleRemoveEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberUpdateEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import org.jetbrains.annotations.NotNull;
+import xyz.yawek.discordverifier.DiscordVerifier;
+
+import java.util.List;
+
+public class MemberUpdateListener extends ListenerAdapter {
+
+    private final DiscordVerifier verifier;
+
+    public MemberUpdateListener(DiscordVerifier verifier) {
+        this.verifier = verifier;
+    }
+
+    @Override
+    public void onGuildMemberUpdate(@NotNull GuildMemberUpdateEvent e) {
+        verifier.getDiscordManager().updateMember(e.getMember());
+    }
+
+    @Override
+    public void onGuildMemberJoin(@NotNull GuildMemberJoinEvent e) {
+        verifier.getDiscordManager().getGuild(e.getGuild()).ifPresent(context ->
+                context.indexMember(e.getMember()));
+    }
+
+    @Override
+    public void onGuildMemberRoleAdd(@NotNull GuildMemberRoleAddEvent e) {
+        verifier.getDiscordManager().getGuild(e.getGuild()).ifPresent(context -> {
+            context.addRoles(e.getMember().getId(), roleIds(e.getRoles()));
+            requestSync(e.getMember().getId());
+        });
+    }
+
+    @Override
+    public void onGuildMemberRoleRemove(@NotNull GuildMemberRoleRemoveEvent e) {
+        verifier.getDiscordManager().getGuild(e.getGuild()).ifPresent(context -> {
+            context.removeRoles(e.getMember().getId(), roleIds(e.getRoles()));
+            requestSync(e.getMember().getId());
+        });
+    }
+
+    @Override
+    public void onGuildMemberRemove(@NotNull GuildMemberRemoveEvent e) {
+        verifier.getDiscordManager().invalidateMember(e.getGuild(), e.getUser().getId());
+        verifier.getDiscordManager().getGuild(e.getGuild()).ifPresent(context ->
+                context.removeMember(e.getUser().getId()));
+    }
+
+    @Override
+    public void onGuildBan(@NotNull GuildBanEvent e) {
+        verifier.getDiscordManager().getGuild(e.getGuild()).ifPresent(context ->
+                context.banMember(e.getUser().getId(), true));
+    }
+
+    @Override
+    public void onGuildUnban(@NotNull GuildUnbanEvent e) {
+        verifier.getDiscordManager().getGuild(e.getGuild()).ifPresent(context ->
+                context.banMember(e.getUser().getId(), false));
+    }
+
+    private void requestSync(String memberId) {
+        verifier.getLinkIndex().getUUID(memberId).ifPresent(uuid ->
+                verifier.getSyncPipeline().request(uuid));
+    }
+
+    private static List<String> roleIds(List<Role> roles) {
+        return roles.stream().map(Role::getId).toList();
+    }
+
+}
@@ -18,10 +18,9 @@
 
 package xyz.yawek.discordverifier.discordlistener;
 
-import com.velocitypowered.api.proxy.Player;
-import com.velocitypowered.api.proxy.ProxyServer;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageEmbed;
 import net.dv8tion.jda.api.entities.channel.unions.MessageChannelUnion;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
@@ -29,14 +28,10 @@ import org.jetbrains.annotations.NotNull;
 import xyz.yawek.discordverifier.DiscordVerifier;
 import xyz.yawek.discordverifier.config.Config;
 import xyz.yawek.discordverifier.manager.DiscordManager;
-import xyz.yawek.discordverifier.manager.VerifiableUserManager;
 import xyz.yawek.discordverifier.manager.VerificationManager;
 import xyz.yawek.discordverifier.user.VerifiableUser;
-import xyz.yawek.discordverifier.util.LogUtils;
 
 import java.util.Optional;
-import java.util.UUID;
-import java.util.concurrent.TimeUnit;
 
 public class MessageReceivedListener extends ListenerAdapter {
 
@@ -49,10 +44,8 @@ public class MessageReceivedListener extends ListenerAdapter {
     @Override
     public void onMessageReceived(@NotNull MessageReceivedEvent e) {
         DiscordManager discord = verifier.getDiscordManager();
-        Config config = verifier.getConfig();
-        VerificationManager verification = verifier.getVerificationManager();
 
-        if (!e.getChannel().getId().equalsIgnoreCase(config.channelId())) {
+        if (!discord.isVerificationChannel(e.getChannel())) {
             return;
         }
         if (discord.isOtherBot(e.getAuthor())) {
@@ -65,61 +58,39 @@ public class MessageReceivedListener extends ListenerAdapter {
             return;
         }
         if (e.getMessage().getContentRaw().length() > 100) {
-            message.delete().queue();
+            discord.deleteMessage(message);
             return;
         }
 
         Member member = e.getMember();
         if (member == null) {
-            message.delete().queue();
+            discord.deleteMessage(message);
+            return;
+        }
+
+        if (!discord.getRateLimiter().tryAcquire(e.getChannel().getId(), member.getId())) {
+            discord.deleteMessage(message);
             return;
         }
 
-        VerifiableUserManager userManager = verifier.getUserManager();
-        MessageChannelUnion channel = e.getChannel();
+        if (!discord.dispatch(e.getGuild(), member.getId(),
+                () -> handle(message, member, e.getChannel()))) {
+            discord.deleteMessage(message);
+        }
+    }
+
+    private void handle(Message message, Member member, MessageChannelUnion channel) {
+        Config config = verifier.getConfig();
+        VerificationManager verification = verifier.getVerificationManager();
 
         Optional<VerifiableUser> discordUser =
-                userManager.retrieveByMemberId(member.getId());
+                verifier.getUserManager().retrieveByMemberId(member.getId());
 
         boolean unlinking = message.getContentRaw().startsWith("!mcunlink");
 
         if (discordUser.isPresent() && discordUser.get().isVerified()) {
             if (unlinking) {
-                // todo; pls combine this and discord unlink in game command
-                UUID uuid = discordUser.get().getUUID();
-                verifier.getVerificationManager().updateGroups(uuid, true);
-                verifier.getVerificationManager().updateRoles(uuid, true);
-                verifier.getVerificationManager().updatePermissions(uuid, true);
-                VerifiableUser user = userManager.create(uuid);
-                userManager.updateUser(user.toBuilder()
-                        .discordId(null)
-                        .discordName(null)
-                        .verified(false)
-                        .build());
-
-                boolean kickUnlink = config.kickOnUnlink();
-
-                String sendServer = config.sendToServerOnUnlink();
-                boolean sendToServer = !sendServer.isBlank();
-
-                if (sendToServer || kickUnlink) {
-                    ProxyServer proxy = verifier.getServer();
-                    Optional<Player> optPly = proxy.getPlayer(uuid);
-
-                    if (optPly.isPresent()) {
-                        Player ply = optPly.get();
-
-                        if (sendToServer) {
-                            var optServer = proxy.getServer(sendServer);
-                            if (optServer.isPresent()) ply.createConnectionRequest(optServer.get()).connect();
-                            else {
-                                LogUtils.error("No server found by the name " + sendServer);
-                                if (kickUnlink) ply.disconnect(config.unlinkKicked());
-                            }
-                        } else ply.disconnect(config.unlinkKicked());
-                    }
-                }
-
+                verification.unlink(discordUser.get().getUUID());
                 channel.sendMessageEmbeds(config.verificationUnlinked()).queue();
             } else channel.sendMessageEmbeds(config.discordAlreadyVerified()).queue();
 
@@ -131,44 +102,36 @@ public class MessageReceivedListener extends ListenerAdapter {
 
         if (!message.getContentRaw().startsWith("!mclink ")) {
             // todo; send message telling user of wrong usage
-            message.delete().queue();
-            return;
-        }
-
-        String nickname = message.getContentRaw().replaceFirst("!mclink ", "");
-        if (nickname.length() > 40) {
-            message.delete().queue();
+            verifier.getDiscordManager().deleteMessage(message);
             return;
         }
 
-        Optional<VerifiableUser> user =
-                userManager.retrieveByNickname(nickname);
-        Optional<Player> playerOptional = verifier.getServer().getPlayer(nickname);
-
-        if (playerOptional.isEmpty() || user.isEmpty()) {
-            channel.sendMessageEmbeds(config.playerNotFound(nickname)).queue();
+        String content = message.getContentRaw().replaceFirst("!mclink ", "");
+        if (content.startsWith("code:")) {
+            channel.sendMessageEmbeds(verification.linkByCode(member,
+                    content.substring("code:".length()))).queue();
             deleteAfterDelay(message);
             return;
         }
 
-        if (user.get().isVerified()) {
-            channel.sendMessageEmbeds(config.playerAlreadyVerified(nickname)).queue();
-            deleteAfterDelay(message);
+        String nickname = content;
+        if (nickname.length() > 40) {
+            verifier.getDiscordManager().deleteMessage(message);
             return;
         }
 
-        if (verification.startVerification(e.getMember(), playerOptional.get())) {
-            channel.sendMessageEmbeds(config.verificationAccepted(nickname)).queue();
-            deleteAfterDelay(message);
+        Optional<MessageEmbed> response = verification.requestVerification(member, nickname);
+        if (response.isEmpty()) {
+            verifier.getDiscordManager().deleteMessage(message);
             return;
         }
-        message.delete().queue();
+        channel.sendMessageEmbeds(response.get()).queue();
+        deleteAfterDelay(message);
     }
 
     private void deleteAfterDelay(Message message) {
-        message.delete().queueAfter(
-                verifier.getConfig().messageDeleteDelay(),
-                TimeUnit.SECONDS);
+        verifier.getDiscordManager().deleteMessage(message,
+                verifier.getConfig().messageDeleteDelay());
     }
 
 }
@@ -0,0 +1,57 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.discordlistener;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRoleAddEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRoleRemoveEvent;
+import net.dv8tion.jda.api.events.role.GenericRoleEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import org.jetbrains.annotations.NotNull;
+import xyz.yawek.discordverifier.DiscordVerifier;
+import xyz.yawek.discordverifier.manager.GuildContext;
+
+public class RoleUpdateListener extends ListenerAdapter {
+
+    private final DiscordVerifier verifier;
+
+    public RoleUpdateListener(DiscordVerifier verifier) {
+        this.verifier = verifier;
+    }
+
+    @Override
+    public void onGenericRole(@NotNull GenericRoleEvent e) {
+        compileRules(e.getGuild());
+    }
+
+    @Override
+    public void onGuildMemberRoleAdd(@NotNull GuildMemberRoleAddEvent e) {
+        if (e.getMember().equals(e.getGuild().getSelfMember())) compileRules(e.getGuild());
+    }
+
+    @Override
+    public void onGuildMemberRoleRemove(@NotNull GuildMemberRoleRemoveEvent e) {
+        if (e.getMember().equals(e.getGuild().getSelfMember())) compileRules(e.getGuild());
+    }
+
+    private void compileRules(Guild guild) {
+        verifier.getDiscordManager().getGuild(guild).ifPresent(GuildContext::compileRules);
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.discordlistener;
+
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.events.interaction.command.CommandAutoCompleteInteractionEvent;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.interactions.InteractionHook;
+import net.dv8tion.jda.api.interactions.commands.OptionMapping;
+import net.dv8tion.jda.api.interactions.commands.build.OptionData;
+import org.jetbrains.annotations.NotNull;
+import xyz.yawek.discordverifier.DiscordVerifier;
+import xyz.yawek.discordverifier.config.Config;
+import xyz.yawek.discordverifier.manager.DiscordManager;
+import xyz.yawek.discordverifier.manager.VerificationManager;
+import xyz.yawek.discordverifier.user.VerifiableUser;
+
+import java.util.Optional;
+
+public class SlashCommandListener extends ListenerAdapter {
+
+    public static final String LINK_COMMAND = "mclink";
+    public static final String UNLINK_COMMAND = "mcunlink";
+    public static final String NICKNAME_OPTION = "nickname";
+    public static final String CODE_OPTION = "code";
+    public static final int MAX_NICKNAME_LENGTH = 40;
+    public static final int MAX_CODE_LENGTH = 20;
+
+    private final DiscordVerifier verifier;
+
+    public SlashCommandListener(DiscordVerifier verifier) {
+        this.verifier = verifier;
+    }
+
+    @Override
+    public void onSlashCommandInteraction(@NotNull SlashCommandInteractionEvent e) {
+        DiscordManager discord = verifier.getDiscordManager();
+
+        String command = e.getName();
+        if (!command.equals(LINK_COMMAND) && !command.equals(UNLINK_COMMAND)) return;
+
+        Member member = e.getMember();
+        if (member == null || !discord.isVerificationGuild(e.getGuild())) return;
+        if (!discord.getRateLimiter().tryAcquire(e.getChannel().getId(), member.getId())) {
+            e.replyEmbeds(verifier.getConfig().rateLimited()).setEphemeral(true).queue();
+            return;
+        }
+
+        String nickname = e.getOption(NICKNAME_OPTION, OptionMapping::getAsString);
+        String code = e.getOption(CODE_OPTION, OptionMapping::getAsString);
+
+        e.deferReply(true).queue();
+        InteractionHook hook = e.getHook().setEphemeral(true);
+        if (!discord.dispatch(e.getGuild(), member.getId(),
+                () -> handle(command, member, nickname, code, hook))) {
+            hook.deleteOriginal().queue();
+        }
+    }
+
+    @Override
+    public void onCommandAutoCompleteInteraction(@NotNull CommandAutoCompleteInteractionEvent e) {
+        if (!e.getName().equals(LINK_COMMAND)
+                || !e.getFocusedOption().getName().equals(NICKNAME_OPTION)) return;
+        e.replyChoiceStrings(verifier.getPlayerIndex()
+                .search(e.getFocusedOption().getValue(), OptionData.MAX_CHOICES)).queue();
+    }
+
+    private void handle(String command, Member member, String nickname, String code,
+                        InteractionHook hook) {
+        Config config = verifier.getConfig();
+        VerificationManager verification = verifier.getVerificationManager();
+
+        Optional<VerifiableUser> discordUser =
+                verifier.getUserManager().retrieveByMemberId(member.getId());
+        boolean verified = discordUser.isPresent() && discordUser.get().isVerified();
+
+        MessageEmbed response;
+        if (command.equals(UNLINK_COMMAND)) {
+            if (verified) {
+                verification.unlink(discordUser.get().getUUID());
+                response = config.verificationUnlinked();
+            } else response = config.discordNotVerified();
+        } else if (verified) {
+            response = config.discordAlreadyVerified();
+        } else if (code != null) {
+            response = verification.linkByCode(member, code);
+        } else if (nickname == null || nickname.length() > MAX_NICKNAME_LENGTH) {
+            response = config.playerNotFound(nickname == null ? ""
+                    : nickname.substring(0, MAX_NICKNAME_LENGTH));
+        } else {
+            response = verification.requestVerification(member, nickname, hook)
+                    .orElseGet(config::verificationAlreadyRequested);
+        }
+        hook.sendMessageEmbeds(response).queue();
+    }
+
+}
@@ -19,7 +19,9 @@
 package xyz.yawek.discordverifier.listener;
 
 import com.velocitypowered.api.event.EventTask;
+import com.velocitypowered.api.event.ResultedEvent;
 import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.connection.DisconnectEvent;
 import com.velocitypowered.api.event.connection.LoginEvent;
 import com.velocitypowered.api.event.connection.PostLoginEvent;
 import com.velocitypowered.api.proxy.Player;
@@ -27,26 +29,62 @@ import net.dv8tion.jda.api.entities.Member;
 import xyz.yawek.discordverifier.DiscordVerifier;
 import xyz.yawek.discordverifier.config.Config;
 import xyz.yawek.discordverifier.manager.DiscordManager;
-import xyz.yawek.discordverifier.manager.VerificationManager;
+import xyz.yawek.discordverifier.manager.LinkIndex;
+import xyz.yawek.discordverifier.manager.ResyncQueue;
 import xyz.yawek.discordverifier.user.VerifiableUser;
+import xyz.yawek.discordverifier.util.LogUtils;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class LoginListener {
 
     private final DiscordVerifier verifier;
+    private final ThreadPoolExecutor admissionExecutor;
+    private final ThreadPoolExecutor linkCheckExecutor;
 
     public LoginListener(DiscordVerifier verifier) {
         this.verifier = verifier;
+
+        Config config = verifier.getConfig();
+        int concurrency = Math.max(1, config.loginAdmissionConcurrency());
+        int queueSize = Math.max(1, config.loginAdmissionQueueSize());
+        // A full admission queue makes the login thread load the data itself, which slows down
+        // further logins. Link checks have their own threads, so they don't wait behind the loads.
+        this.admissionExecutor = createExecutor("DiscordVerifier Login Worker", concurrency, queueSize,
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.linkCheckExecutor = createExecutor("DiscordVerifier Link Check Worker", concurrency, queueSize,
+                new ThreadPoolExecutor.AbortPolicy());
+        verifier.getStatistics().registerGauge("login.admission-active", admissionExecutor::getActiveCount);
+        verifier.getStatistics().registerGauge("login.admission-queued", () -> admissionExecutor.getQueue().size());
+    }
+
+    private static ThreadPoolExecutor createExecutor(String name, int threads, int queueSize,
+                                                     RejectedExecutionHandler handler) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+            Thread thread = new Thread(runnable, name + " #" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, handler);
+    }
+
+    public void shutdown() {
+        admissionExecutor.shutdownNow();
+        linkCheckExecutor.shutdownNow();
     }
 
     @Subscribe
     public EventTask onPlayerPostLogin(PostLoginEvent e) {
+        verifier.getPlayerIndex().add(e.getPlayer().getUsername());
         return EventTask.async(() -> {
             Player player = e.getPlayer();
-            VerifiableUser user =
-                    verifier.getUserManager().create(player.getUniqueId());
+            VerifiableUser user = verifier.getUserManager().create(player.getUniqueId());
             if (!user.isVerified())
                 player.sendMessage(verifier.getConfig().notVerifiedYet());
         });
@@ -55,40 +93,114 @@ public class LoginListener {
     @Subscribe
     public EventTask onPlayerLogin(LoginEvent e) {
         return EventTask.async(() -> {
+            Config config = verifier.getConfig();
+            DiscordManager discordManager = verifier.getDiscordManager();
             Player player = e.getPlayer();
+            verifier.getStatistics().increment("proxy.logins");
 
-            verifier.getDataProvider().updateUserIdentity(
-                            player.getUniqueId(), player.getUsername());
+            if (discordManager.isStarting() && config.denyLoginsUntilReady()) {
+                e.setResult(ResultedEvent.ComponentResult.denied(config.discordNotReady()));
+                return;
+            }
 
-            VerificationManager verificationManager = verifier.getVerificationManager();
-            verificationManager.updateGroups(player);
-            verificationManager.updateRoles(player);
-            verificationManager.updatePermissions(player);
-            verificationManager.updateNickname(player, true);
+            UUID uuid = player.getUniqueId();
+            if (verifier.getBanList().isBanned(uuid)) {
+                e.setResult(ResultedEvent.ComponentResult.denied(config.discordBannedJoin()));
+                return;
+            }
 
-            VerifiableUser user =
-                    verifier.getUserManager().create(player.getUniqueId());
+            if (config.requireLink() && !player.hasPermission("discordverifier.bypass-link")) {
+                Optional<Boolean> linkedOptional = isLinked(uuid, config.loginDeadline());
+                if (linkedOptional.isEmpty()) {
+                    e.setResult(ResultedEvent.ComponentResult.denied(config.discordNotReady()));
+                    return;
+                }
+                if (!linkedOptional.get()) {
+                    verifier.getStatistics().increment("login.denied-unlinked");
+                    String code = verifier.getVerificationManager()
+                            .issueLinkCode(uuid, player.getUsername());
+                    e.setResult(ResultedEvent.ComponentResult.denied(config.notLinked(code)));
+                    return;
+                }
+            }
 
-            if (user.isVerified()) {
-                Config config = verifier.getConfig();
+            CompletableFuture<VerifiableUser> userFuture = CompletableFuture.supplyAsync(() -> {
+                verifier.getDataProvider().updateUserIdentity(uuid, player.getUsername());
+                return verifier.getUserManager().load(uuid);
+            }, admissionExecutor);
+            verifier.getSessionRegistry().open(uuid, userFuture);
+            CompletableFuture<List<Member>> membersFuture = retrieveMembers(uuid, userFuture);
+
+            if (!discordManager.isIndexed() && hasBannedRole(membersFuture, config.loginDeadline())) {
+                verifier.getSessionRegistry().close(uuid);
+                e.setResult(ResultedEvent.ComponentResult.denied(config.discordBannedJoin()));
+                return;
+            }
 
-                List<String> bannedRoles = config.bannedDiscordRoles();
-                if (bannedRoles.isEmpty()) return;
+            ResyncQueue loginQueue = verifier.getLoginQueue();
+            userFuture.thenRun(() -> loginQueue.enqueue(uuid)).exceptionally(throwable -> {
+                LogUtils.errorDataAccess("Unable to load data of the player with UUID {}.", uuid.toString());
+                throwable.printStackTrace();
+                return null;
+            });
+            if (discordManager.isReady()) return;
+            discordManager.whenReady(() -> {
+                if (player.isActive()) loginQueue.enqueue(uuid);
+            });
+        });
+    }
 
-                DiscordManager discordManager = verifier.getDiscordManager();
+    private Optional<Boolean> isLinked(UUID uuid, long deadline) {
+        LinkIndex linkIndex = verifier.getLinkIndex();
+        if (linkIndex.getMemberId(uuid).isPresent()) return Optional.of(true);
+        if (linkIndex.isLoaded()) return Optional.of(false);
+
+        verifier.getStatistics().increment("login.link-checks");
+        try {
+            return Optional.of(CompletableFuture.supplyAsync(
+                    () -> verifier.getDataProvider().isVerified(uuid), linkCheckExecutor)
+                    .get(deadline, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException | ExecutionException | RejectedExecutionException e) {
+            verifier.getStatistics().increment("login.link-check-failures");
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        }
+    }
 
-                Optional<String> optId = user.getDiscordId();
-                if (optId.isEmpty()) return;
+    private CompletableFuture<List<Member>> retrieveMembers(UUID uuid,
+                                                            CompletableFuture<VerifiableUser> userFuture) {
+        DiscordManager discordManager = verifier.getDiscordManager();
+        if (!discordManager.isConnected()) return CompletableFuture.completedFuture(Collections.emptyList());
 
-                Optional<Member> optMember = discordManager.getMemberById(optId.get());
-                if (optMember.isEmpty()) return;
+        Optional<String> memberIdOptional = verifier.getLinkIndex().getMemberId(uuid);
+        if (memberIdOptional.isPresent()) return discordManager.retrieveMembers(memberIdOptional.get());
+        return userFuture.thenCompose(user -> user.getDiscordId()
+                .map(discordManager::retrieveMembers)
+                .orElse(CompletableFuture.completedFuture(Collections.emptyList())));
+    }
 
-                boolean hasBannedRole = optMember.get().getRoles().stream()
-                        .anyMatch(role -> bannedRoles.contains(role.getId()));
+    private boolean hasBannedRole(CompletableFuture<List<Member>> membersFuture, long deadline) {
+        try {
+            return verifier.getDiscordManager().hasBannedRole(
+                    membersFuture.get(deadline, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            verifier.getStatistics().increment("login.gate-timeouts");
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            return false;
+        }
+    }
 
-                if (hasBannedRole) player.disconnect(config.discordBannedJoin());
-            }
-        });
+    @Subscribe
+    public void onPlayerDisconnect(DisconnectEvent e) {
+        verifier.getPlayerIndex().remove(e.getPlayer().getUsername());
+        verifier.getSessionRegistry().close(e.getPlayer().getUniqueId());
+        verifier.getSyncPipeline().invalidate(e.getPlayer().getUniqueId());
     }
 
 }
@@ -0,0 +1,93 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.manager;
+
+import com.velocitypowered.api.proxy.Player;
+import xyz.yawek.discordverifier.DiscordVerifier;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class BanList {
+
+    private final DiscordVerifier verifier;
+    private final Map<UUID, Set<String>> bannedPlayers = new ConcurrentHashMap<>();
+
+    public BanList(DiscordVerifier verifier) {
+        this.verifier = verifier;
+    }
+
+    public static String roleSource(long guildId) {
+        return guildId + ":role";
+    }
+
+    public static String banSource(long guildId) {
+        return guildId + ":ban";
+    }
+
+    public void add(UUID uuid, String source) {
+        boolean[] newlyBanned = {false};
+        bannedPlayers.compute(uuid, (key, sources) -> {
+            if (sources == null) {
+                sources = ConcurrentHashMap.newKeySet();
+                newlyBanned[0] = true;
+            }
+            sources.add(source);
+            return sources;
+        });
+        if (!newlyBanned[0]) return;
+
+        Optional<Player> playerOptional = verifier.getServer().getPlayer(uuid);
+        playerOptional.ifPresent(player -> player.disconnect(verifier.getConfig().discordBanned()));
+    }
+
+    public void remove(UUID uuid, String source) {
+        bannedPlayers.computeIfPresent(uuid, (key, sources) -> {
+            sources.remove(source);
+            return sources.isEmpty() ? null : sources;
+        });
+    }
+
+    public void removeAll(UUID uuid) {
+        bannedPlayers.remove(uuid);
+    }
+
+    public void clearSource(String source) {
+        bannedPlayers.keySet().forEach(uuid -> remove(uuid, source));
+    }
+
+    public void replaceSource(String source, Set<UUID> uuids) {
+        uuids.forEach(uuid -> add(uuid, source));
+        bannedPlayers.keySet().stream()
+                .filter(uuid -> !uuids.contains(uuid))
+                .forEach(uuid -> remove(uuid, source));
+    }
+
+    public boolean isBanned(UUID uuid) {
+        return bannedPlayers.containsKey(uuid);
+    }
+
+    public int size() {
+        return bannedPlayers.size();
+    }
+
+}
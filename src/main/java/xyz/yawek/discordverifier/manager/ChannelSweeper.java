@@ -0,0 +1,100 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.manager;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
+import xyz.yawek.discordverifier.util.LogUtils;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class ChannelSweeper {
+
+    private final JDA jda;
+    private final TreeMap<Long, List<QueuedMessage>> buckets = new TreeMap<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "DiscordVerifier Channel Sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ChannelSweeper(JDA jda) {
+        this.jda = jda;
+        executor.scheduleAtFixedRate(this::sweep, 1, 1, TimeUnit.SECONDS);
+    }
+
+    public void schedule(Message message, long delaySeconds) {
+        long bucket = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis())
+                + Math.max(0, delaySeconds);
+        QueuedMessage queuedMessage =
+                new QueuedMessage(message.getChannel().getIdLong(), message.getId());
+        synchronized (buckets) {
+            buckets.computeIfAbsent(bucket, key -> new ArrayList<>()).add(queuedMessage);
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        purge(drain(Long.MAX_VALUE));
+    }
+
+    private void sweep() {
+        purge(drain(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis())));
+    }
+
+    private List<QueuedMessage> drain(long until) {
+        List<QueuedMessage> expired = new ArrayList<>();
+        synchronized (buckets) {
+            SortedMap<Long, List<QueuedMessage>> dueBuckets = buckets.headMap(until, true);
+            dueBuckets.values().forEach(expired::addAll);
+            dueBuckets.clear();
+        }
+        return expired;
+    }
+
+    private void purge(List<QueuedMessage> messages) {
+        if (messages.isEmpty()) return;
+
+        Map<Long, List<String>> messagesByChannel = new HashMap<>();
+        for (QueuedMessage message : messages) {
+            messagesByChannel.computeIfAbsent(message.channelId(), id -> new ArrayList<>())
+                    .add(message.messageId());
+        }
+        messagesByChannel.forEach((channelId, messageIds) -> {
+            MessageChannel channel = jda.getChannelById(MessageChannel.class, channelId);
+            if (channel == null) return;
+            CompletableFuture.allOf(channel.purgeMessagesById(messageIds)
+                    .toArray(new CompletableFuture[0])).exceptionally(throwable -> {
+                LogUtils.errorDiscord("Unable to delete {} messages in channel {}, make sure the bot " +
+                        "has the Manage Messages permission.", String.valueOf(messageIds.size()),
+                        String.valueOf(channelId));
+                throwable.printStackTrace();
+                return null;
+            });
+        });
+    }
+
+    private record QueuedMessage(long channelId, String messageId) {}
+
+}
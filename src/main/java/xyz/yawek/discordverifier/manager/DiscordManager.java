@@ -22,81 +22,272 @@ import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.JDABuilder;
 import net.dv8tion.jda.api.entities.*;
 import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
+import net.dv8tion.jda.api.entities.channel.middleman.GuildChannel;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
+import net.dv8tion.jda.api.interactions.commands.OptionType;
+import net.dv8tion.jda.api.interactions.commands.build.Commands;
+import net.dv8tion.jda.api.interactions.commands.build.OptionData;
 import net.dv8tion.jda.api.requests.GatewayIntent;
+import net.dv8tion.jda.api.requests.RestConfig;
+import net.dv8tion.jda.api.utils.SessionControllerAdapter;
+import okhttp3.OkHttpClient;
+import org.jetbrains.annotations.NotNull;
 import xyz.yawek.discordverifier.DiscordVerifier;
 import xyz.yawek.discordverifier.config.Config;
-import xyz.yawek.discordverifier.user.VerifiableUser;
+import xyz.yawek.discordverifier.config.GuildSettings;
+import xyz.yawek.discordverifier.discordlistener.SlashCommandListener;
+import xyz.yawek.discordverifier.role.RuleTable;
 import xyz.yawek.discordverifier.util.LogUtils;
 
-import javax.security.auth.login.LoginException;
-import java.util.Collections;
-import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 public class DiscordManager {
 
     private final DiscordVerifier verifier;
     private JDA jda;
-    private long GUILD_ID;
+    private volatile Map<Long, GuildContext> guilds = Collections.emptyMap();
+    private ChannelSweeper channelSweeper;
+    private final RateLimiter rateLimiter;
+    private final CompletableFuture<Void> readyFuture = new CompletableFuture<>();
     
     public DiscordManager(DiscordVerifier verifier) {
         this.verifier = verifier;
+        this.rateLimiter = new RateLimiter(verifier);
+        verifier.getStatistics().registerGauge("discord.queued-events", () ->
+                guilds.values().stream().mapToInt(GuildContext::getQueuedEvents).sum());
     }
 
     public boolean setup() {
         Config config = verifier.getConfig();
 
+        // The top-level guild and channel are required only without a 'guilds' list, or when they are set.
+        boolean legacyGuild = !config.hasGuildList()
+                || GuildSettings.parseId(config.guildId()).isPresent();
         if (config.discordToken()
                 .equalsIgnoreCase("ENTER_YOUR_BOT_TOKEN_HERE")
-                || config.guildId()
-                .equalsIgnoreCase("ENTER_YOUR_GUILD_ID_HERE")
-                || config.channelId()
-                .equalsIgnoreCase("ENTER_YOUR_CHANNEL_ID_HERE")) {
+                || (legacyGuild && config.guildId()
+                .equalsIgnoreCase("ENTER_YOUR_GUILD_ID_HERE"))
+                || (legacyGuild && config.channelId()
+                .equalsIgnoreCase("ENTER_YOUR_CHANNEL_ID_HERE"))
+                || config.guilds().isEmpty()) {
             LogUtils.errorDiscord("You have not set up 'discord' settings in the config.yml " +
                     "correctly. Make sure that everything is fine and restart the server.");
+            readyFuture.completeExceptionally(new IllegalStateException("Discord is not configured."));
             return false;
         }
 
-        this.GUILD_ID = Long.parseLong(config.guildId());
+        EnumSet<GatewayIntent> intents = EnumSet.of(
+                GatewayIntent.GUILD_MEMBERS,
+                GatewayIntent.DIRECT_MESSAGE_REACTIONS,
+                GatewayIntent.DIRECT_MESSAGE_TYPING,
+                GatewayIntent.DIRECT_MESSAGES,
+                GatewayIntent.GUILD_MODERATION,
+                GatewayIntent.GUILD_EXPRESSIONS,
+                GatewayIntent.GUILD_INVITES,
+                GatewayIntent.GUILD_MESSAGE_REACTIONS,
+                GatewayIntent.GUILD_MESSAGE_TYPING,
+                GatewayIntent.GUILD_MESSAGES,
+                GatewayIntent.GUILD_PRESENCES,
+                GatewayIntent.GUILD_VOICE_STATES);
+        if (config.messageCommandsEnabled()) intents.add(GatewayIntent.MESSAGE_CONTENT);
+
+        JDABuilder builder = JDABuilder.create(config.discordToken(), intents)
+                .setHttpClientBuilder(new OkHttpClient.Builder()
+                        .addInterceptor(new RestCallCounter(verifier.getStatistics())));
+        String apiUrl = config.discordApiUrl();
+        if (apiUrl != null && !apiUrl.isBlank()) {
+            builder.setRestConfig(new RestConfig().setBaseUrl(apiUrl));
+            String gatewayUrl = config.discordGatewayUrl();
+            if (gatewayUrl != null && !gatewayUrl.isBlank()) {
+                builder.setSessionController(new SessionControllerAdapter() {
+                    @Override
+                    public @NotNull String getGateway() {
+                        return gatewayUrl;
+                    }
+                });
+            }
+        }
+        jda = builder.build();
+        this.channelSweeper = new ChannelSweeper(jda);
+
+        Map<Long, GuildContext> guildContexts = new LinkedHashMap<>();
+        for (GuildSettings settings : config.guilds()) {
+            guildContexts.put(settings.getGuildId(), new GuildContext(verifier, jda, settings));
+        }
+        this.guilds = Collections.unmodifiableMap(guildContexts);
+        compileRules();
+
+        Thread startupThread = new Thread(this::awaitReady, "DiscordVerifier Discord Startup");
+        startupThread.setDaemon(true);
+        startupThread.start();
+        return true;
+    }
+
+    private void awaitReady() {
+        long startTime = System.nanoTime();
         try {
-            jda = JDABuilder.create(
-                    config.discordToken(),
-                    GatewayIntent.GUILD_MEMBERS,
-                    GatewayIntent.DIRECT_MESSAGE_REACTIONS,
-                    GatewayIntent.DIRECT_MESSAGE_TYPING,
-                    GatewayIntent.DIRECT_MESSAGES,
-                    GatewayIntent.MESSAGE_CONTENT,
-                    GatewayIntent.GUILD_MODERATION,
-                    GatewayIntent.GUILD_EXPRESSIONS,
-                    GatewayIntent.GUILD_INVITES,
-                    GatewayIntent.GUILD_MESSAGE_REACTIONS,
-                    GatewayIntent.GUILD_MESSAGE_REACTIONS,
-                    GatewayIntent.GUILD_MESSAGE_TYPING,
-                    GatewayIntent.GUILD_MESSAGES,
-                    GatewayIntent.GUILD_PRESENCES,
-                    GatewayIntent.GUILD_VOICE_STATES
-            ).build().awaitReady();
-            return true;
-        } catch (InterruptedException e) {
+            jda.awaitReady();
+        } catch (InterruptedException | IllegalStateException e) {
+            if (readyFuture.isCancelled()) return;
             LogUtils.errorDiscord("Unable to connect to the Discord bot. " +
                     "Make sure you set 'discord' settings correctly in the config.yml.");
             e.printStackTrace();
+            readyFuture.completeExceptionally(e);
+            return;
         }
-        return false;
+
+        compileRules();
+        guilds.values().forEach(this::registerCommands);
+        LogUtils.info("Connected to Discord in {} ms.",
+                String.valueOf(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)));
+        readyFuture.complete(null);
+    }
+
+    public synchronized List<GuildContext> reloadGuilds() {
+        if (jda == null) return Collections.emptyList();
+
+        Map<Long, GuildContext> guildContexts = new LinkedHashMap<>();
+        List<GuildContext> addedGuilds = new ArrayList<>();
+        for (GuildSettings settings : verifier.getConfig().guilds()) {
+            GuildContext context = guilds.get(settings.getGuildId());
+            if (context == null) {
+                context = new GuildContext(verifier, jda, settings);
+                addedGuilds.add(context);
+            }
+            guildContexts.put(settings.getGuildId(), context);
+        }
+        Map<Long, GuildContext> previousGuilds = guilds;
+        this.guilds = Collections.unmodifiableMap(guildContexts);
+
+        previousGuilds.forEach((guildId, context) -> {
+            if (guildContexts.containsKey(guildId)) return;
+            context.shutdown();
+            verifier.getBanList().clearSource(BanList.roleSource(guildId));
+            verifier.getBanList().clearSource(BanList.banSource(guildId));
+            if (isReady()) context.getGuild().ifPresent(guild -> guild.updateCommands().queue());
+            LogUtils.info("Guild {} was removed from the config, it is no longer handled.",
+                    String.valueOf(guildId));
+        });
+        addedGuilds.forEach(context -> {
+            context.compileRules();
+            if (!isReady()) return;
+            registerCommands(context);
+            context.rebuildIndexes();
+            LogUtils.info("Guild {} was added to the config, it is handled from now on.",
+                    String.valueOf(context.getGuildId()));
+        });
+        return addedGuilds;
+    }
+
+    public void compileRules() {
+        guilds.values().forEach(GuildContext::compileRules);
+    }
+
+    public Map<Long, RuleTable> getRules() {
+        Map<Long, RuleTable> rules = new HashMap<>();
+        guilds.forEach((guildId, context) -> rules.put(guildId, context.getRules()));
+        return rules;
+    }
+
+    public boolean isReady() {
+        return readyFuture.isDone() && !readyFuture.isCompletedExceptionally();
+    }
+
+    public boolean isConnected() {
+        return isReady() && jda.getStatus() == JDA.Status.CONNECTED;
+    }
+
+    public boolean isStarting() {
+        return !readyFuture.isDone();
+    }
+
+    public void whenReady(Runnable task) {
+        readyFuture.thenRun(task).exceptionally(throwable -> {
+            if (!readyFuture.isCompletedExceptionally()) throwable.printStackTrace();
+            return null;
+        });
+    }
+
+    private void registerCommands(GuildContext context) {
+        Optional<Guild> guildOptional = context.getGuild();
+        if (guildOptional.isEmpty()) {
+            LogUtils.errorDiscord("Guild with ID {} could not be found, slash commands " +
+                    "are not registered.", String.valueOf(context.getGuildId()));
+            return;
+        }
+
+        Config config = verifier.getConfig();
+        guildOptional.get().updateCommands().addCommands(
+                Commands.slash(SlashCommandListener.LINK_COMMAND, config.linkCommandDescription())
+                        .addOptions(new OptionData(OptionType.STRING,
+                                SlashCommandListener.NICKNAME_OPTION,
+                                config.nicknameOptionDescription(), false, true)
+                                .setMaxLength(SlashCommandListener.MAX_NICKNAME_LENGTH),
+                                new OptionData(OptionType.STRING,
+                                SlashCommandListener.CODE_OPTION,
+                                config.codeOptionDescription(), false)
+                                .setMaxLength(SlashCommandListener.MAX_CODE_LENGTH)),
+                Commands.slash(SlashCommandListener.UNLINK_COMMAND, config.unlinkCommandDescription())
+        ).queue();
     }
 
     public void shutdown() {
         if (jda == null) return;
+        readyFuture.cancel(false);
+        guilds.values().forEach(GuildContext::shutdown);
+        channelSweeper.shutdown();
         jda.shutdown();
     }
 
-    public Optional<String> getDiscordName(String memberId) {
-        Guild guild = jda.getGuildById(GUILD_ID);
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public Collection<GuildContext> getGuilds() {
+        return guilds.values();
+    }
+
+    public Optional<GuildContext> getGuild(Guild guild) {
         if (guild == null) return Optional.empty();
-        Optional<Member> memberOptional = getMemberById(memberId);
-        return memberOptional.map(Member::getEffectiveName);
+        return getGuild(guild.getIdLong());
+    }
+
+    public Optional<GuildContext> getGuild(long guildId) {
+        return Optional.ofNullable(guilds.get(guildId));
+    }
+
+    public Optional<String> getDiscordName(String memberId) {
+        for (GuildContext context : guilds.values()) {
+            Optional<Member> memberOptional = context.getMemberResolver().getCached(memberId);
+            if (memberOptional.isPresent()) return memberOptional.map(Member::getEffectiveName);
+        }
+        for (GuildContext context : guilds.values()) {
+            Optional<String> nameOptional = context.getRoleIndex().getDisplayName(memberId);
+            if (nameOptional.isPresent()) return nameOptional;
+        }
+        return Optional.empty();
+    }
+
+    public Map<GuildSettings, Set<String>> getIndexedRoles(String memberId) {
+        Map<GuildSettings, Set<String>> indexedRoles = new LinkedHashMap<>();
+        for (GuildContext context : guilds.values()) {
+            if (context.getRoleIndex().contains(memberId))
+                indexedRoles.put(context.getSettings(), context.getRoleIndex().getRoles(memberId));
+        }
+        return indexedRoles;
+    }
+
+    public boolean isVerificationGuild(Guild guild) {
+        return guild != null && guilds.containsKey(guild.getIdLong());
+    }
+
+    public boolean isVerificationChannel(MessageChannel channel) {
+        if (!(channel instanceof GuildChannel guildChannel)) return false;
+        return getGuild(guildChannel.getGuild())
+                .map(context -> channel.getId().equals(context.getSettings().getChannelId()))
+                .orElse(false);
     }
 
     public boolean isBotItself(User user) {
@@ -107,39 +298,81 @@ public class DiscordManager {
         return user.isBot() && jda.getSelfUser() != user;
     }
 
-    public void sendInVerification(MessageEmbed messageEmbed) {
+    public void sendInVerification(Guild guild, MessageEmbed messageEmbed) {
+        Optional<GuildContext> contextOptional = getGuild(guild);
+        if (contextOptional.isEmpty()) return;
         TextChannel verificationChannel =
-                jda.getTextChannelById(verifier.getConfig().channelId());
+                guild.getTextChannelById(contextOptional.get().getSettings().getChannelId());
         if (verificationChannel == null) return;
         verificationChannel.sendMessageEmbeds(messageEmbed).queue();
     }
 
+    public void deleteMessage(Message message) {
+        channelSweeper.schedule(message, 0);
+    }
+
+    public void deleteMessage(Message message, int delaySeconds) {
+        channelSweeper.schedule(message, delaySeconds);
+    }
+
+    public boolean dispatch(Guild guild, String memberId, Runnable task) {
+        Optional<GuildContext> contextOptional = getGuild(guild);
+        return contextOptional.isPresent() && contextOptional.get().dispatch(memberId, task);
+    }
+
     public void addEventListener(Object object) {
         jda.addEventListener(object);
     }
 
-    public Optional<Role> getRole(String id) {
-        Role role = jda.getRoleById(id);
+    public Optional<Role> getRole(long guildId, String id) {
+        Guild guild = jda.getGuildById(guildId);
+        if (guild == null) return Optional.empty();
+        Role role = guild.getRoleById(id);
         return role != null ? Optional.of(role) : Optional.empty();
     }
 
-    public void addRole(Member member, Role role) {
-        Guild guild = jda.getGuildById(GUILD_ID);
-        if (guild == null) return;
-        guild.addRoleToMember(member, role).queue();
+    public void modifyRoles(Member member, Collection<Role> rolesToAdd, Collection<Role> rolesToRemove) {
+        if (rolesToAdd.isEmpty() && rolesToRemove.isEmpty()) return;
+        member.getGuild().modifyMemberRoles(member, rolesToAdd, rolesToRemove).queue();
     }
 
-    public void removeRole(Member member, Role role) {
-        Guild guild = jda.getGuildById(GUILD_ID);
-        if (guild == null) return;
-        guild.removeRoleFromMember(member, role).queue();
+    public CompletableFuture<List<Member>> retrieveMembers(String memberId) {
+        List<CompletableFuture<Optional<Member>>> futures = guilds.values().stream()
+                .map(context -> context.getMemberResolver().retrieve(memberId))
+                .toList();
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> futures.stream()
+                        .map(CompletableFuture::join)
+                        .flatMap(Optional::stream)
+                        .toList());
     }
 
-    public Optional<Member> getMemberById(String memberId) {
-        Guild guild = jda.getGuildById(GUILD_ID);
-        if (guild == null) return Optional.empty();
-        Member member = guild.getMemberById(memberId);
-        return member != null ? Optional.of(member) : Optional.empty();
+    public boolean isIndexed() {
+        return guilds.values().stream().allMatch(GuildContext::isIndexed);
+    }
+
+    public boolean hasBannedRole(List<Member> members) {
+        for (Member member : members) {
+            Optional<GuildContext> contextOptional = getGuild(member.getGuild());
+            if (contextOptional.isEmpty()) continue;
+
+            Set<String> bannedRoles = contextOptional.get().getSettings().getBannedRoles();
+            if (member.getRoles().stream().map(Role::getId).anyMatch(bannedRoles::contains))
+                return true;
+        }
+        return false;
+    }
+
+    public void updateMember(Member member) {
+        getGuild(member.getGuild()).ifPresent(context -> {
+            context.getMemberResolver().update(member);
+            context.indexMember(member);
+        });
+    }
+
+    public void invalidateMember(Guild guild, String memberId) {
+        getGuild(guild).ifPresent(context ->
+                context.getMemberResolver().invalidate(memberId));
     }
 
     public void setNickname(Member member, String nickname) {
@@ -147,18 +380,33 @@ public class DiscordManager {
         member.modifyNickname(nickname).queue();
     }
 
-    public List<VerifiableUser> getPlayersWithRole(String roleId) {
-        Guild guild = jda.getGuildById(GUILD_ID);
-        if (guild == null) return Collections.emptyList();
+    public void addLink(String memberId, UUID uuid) {
+        verifier.getLinkIndex().link(memberId, uuid);
+        retrieveMembers(memberId).thenAccept(members -> members.forEach(member ->
+                getGuild(member.getGuild()).ifPresent(context -> context.indexMember(member))));
+    }
+
+    public void updateLinks(Map<String, UUID> previousLinks) {
+        if (!isReady()) return;
 
-        Optional<Role> roleOptional = getRole(roleId);
-        return roleOptional.map(role -> guild.getMembersWithRoles(role).stream()
-                .map(member -> {
-                    Optional<VerifiableUser> userOptional = verifier
-                            .getUserManager().retrieveByMemberId(member.getId());
-                    return userOptional.orElse(null);
-                }).filter(Objects::nonNull).collect(Collectors.toList())).orElse(Collections.emptyList());
+        LinkIndex linkIndex = verifier.getLinkIndex();
+        previousLinks.forEach((memberId, uuid) -> {
+            if (linkIndex.getUUID(memberId).filter(uuid::equals).isPresent()) return;
+            guilds.values().forEach(context -> context.removeMember(memberId));
+            if (linkIndex.getMemberId(uuid).isEmpty()) verifier.getBanList().removeAll(uuid);
+        });
+        linkIndex.getLinks().forEach((memberId, uuid) -> {
+            if (uuid.equals(previousLinks.get(memberId))) return;
+            retrieveMembers(memberId).thenAccept(members -> members.forEach(member ->
+                    getGuild(member.getGuild()).ifPresent(context -> context.indexMember(member))));
+        });
+    }
 
+    public void removeLink(UUID uuid) {
+        verifier.getLinkIndex().unlink(uuid).ifPresent(memberId ->
+                guilds.values().forEach(context -> context.removeMember(memberId)));
+        verifier.getBanList().removeAll(uuid);
+        verifier.getSyncPipeline().invalidate(uuid);
     }
     
 }
@@ -0,0 +1,251 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.manager;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+import xyz.yawek.discordverifier.DiscordVerifier;
+import xyz.yawek.discordverifier.config.Config;
+import xyz.yawek.discordverifier.config.GuildSettings;
+import xyz.yawek.discordverifier.role.RuleTable;
+import xyz.yawek.discordverifier.util.LogUtils;
+import xyz.yawek.discordverifier.util.StripedExecutor;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+public class GuildContext {
+
+    private final DiscordVerifier verifier;
+    private final JDA jda;
+    private final long guildId;
+    private final GuildSettings initialSettings;
+    private final MemberResolver memberResolver;
+    private final StripedExecutor eventExecutor;
+    private final Object banLock = new Object();
+    private volatile RoleIndex roleIndex = new RoleIndex();
+    private volatile RoleIndex rebuildingIndex;
+    private Map<String, Boolean> rebuildingBans;
+    private volatile RuleTable rules = RuleTable.EMPTY;
+    private volatile boolean indexed;
+
+    public GuildContext(DiscordVerifier verifier, JDA jda, GuildSettings settings) {
+        Config config = verifier.getConfig();
+
+        this.verifier = verifier;
+        this.jda = jda;
+        this.guildId = settings.getGuildId();
+        this.initialSettings = settings;
+        this.memberResolver = new MemberResolver(jda, guildId,
+                config.memberCacheSize(), config.memberCacheExpireTime());
+        this.eventExecutor = new StripedExecutor("DiscordVerifier Event Worker " + guildId,
+                config.eventWorkerThreads(), config.eventWorkerQueueSize());
+    }
+
+    public long getGuildId() {
+        return guildId;
+    }
+
+    public GuildSettings getSettings() {
+        return verifier.getConfig().guild(guildId).orElse(initialSettings);
+    }
+
+    public Optional<Guild> getGuild() {
+        return Optional.ofNullable(jda.getGuildById(guildId));
+    }
+
+    public MemberResolver getMemberResolver() {
+        return memberResolver;
+    }
+
+    public RoleIndex getRoleIndex() {
+        return roleIndex;
+    }
+
+    public RuleTable getRules() {
+        return rules;
+    }
+
+    public synchronized void compileRules() {
+        RuleTable previousRules = rules;
+        Config config = verifier.getConfig();
+        RuleTable compiledRules = RuleTable.compile(getSettings(), getGuild().orElse(null),
+                verifier.getLuckPerms(), config.trackDefaultGroups());
+        compiledRules.getUnmanageableRoleIds().stream()
+                .filter(roleId -> !previousRules.getUnmanageableRoleIds().contains(roleId))
+                .forEach(roleId -> LogUtils.errorDiscord("Role {} in guild {} is managed by an " +
+                        "integration or placed above the bot's highest role, it will not be assigned.",
+                        roleId, String.valueOf(guildId)));
+        Set<String> previousMissingTracks = previousRules.getMissingTracks();
+        compiledRules.getRoleGroups().stream()
+                .filter(roleGroup -> roleGroup.usesTrack() && roleGroup.getTrack() == null)
+                .filter(roleGroup -> !previousMissingTracks.contains(roleGroup.getTrackName()))
+                .forEach(roleGroup -> LogUtils.error("Track {} not found, role {} will not add group {}.",
+                        roleGroup.getTrackName(), roleGroup.getRoleId(), roleGroup.getGroupName()));
+        this.rules = compiledRules;
+    }
+
+    public void indexMember(Member member) {
+        if (!verifier.getLinkIndex().isLinked(member.getId())) return;
+        List<String> roleIds = member.getRoles().stream().map(Role::getId).toList();
+        updateIndexes(index -> index.setMember(member.getId(), member.getEffectiveName(), roleIds));
+        refreshBan(member.getId());
+    }
+
+    public void addRoles(String memberId, Collection<String> roleIds) {
+        updateIndexes(index -> index.addRoles(memberId, roleIds));
+        refreshBan(memberId);
+    }
+
+    public void removeRoles(String memberId, Collection<String> roleIds) {
+        updateIndexes(index -> index.removeRoles(memberId, roleIds));
+        refreshBan(memberId);
+    }
+
+    public void removeMember(String memberId) {
+        updateIndexes(index -> index.removeMember(memberId));
+        refreshBan(memberId);
+    }
+
+    public void banMember(String memberId, boolean banned) {
+        synchronized (banLock) {
+            if (rebuildingBans != null) rebuildingBans.put(memberId, banned);
+            verifier.getLinkIndex().getUUID(memberId).ifPresent(uuid -> {
+                if (banned) verifier.getBanList().add(uuid, BanList.banSource(guildId));
+                else verifier.getBanList().remove(uuid, BanList.banSource(guildId));
+            });
+        }
+    }
+
+    // The current indexes and bans stay in use until the rebuilt ones are complete,
+    // events received in the meantime are applied to both.
+    public synchronized void rebuildIndexes() {
+        Optional<Guild> guildOptional = getGuild();
+        if (guildOptional.isEmpty()) return;
+        Guild guild = guildOptional.get();
+
+        long startTime = System.nanoTime();
+        Map<String, Boolean> bansDuringRebuild = new HashMap<>();
+        RoleIndex rebuiltIndex = new RoleIndex();
+        this.rebuildingIndex = rebuiltIndex;
+        synchronized (banLock) {
+            this.rebuildingBans = bansDuringRebuild;
+        }
+        guild.loadMembers(member -> {
+            if (!verifier.getLinkIndex().isLinked(member.getId())) return;
+            rebuiltIndex.setMember(member.getId(), member.getEffectiveName(),
+                    member.getRoles().stream().map(Role::getId).toList());
+        }).onSuccess(ignored -> {
+            synchronized (this) {
+                if (rebuildingIndex != rebuiltIndex) return;
+                this.roleIndex = rebuiltIndex;
+                this.rebuildingIndex = null;
+            }
+            indexed = true;
+            refreshBans();
+            LogUtils.info("Indexed roles of {} linked members in guild {} in {} ms.",
+                    String.valueOf(rebuiltIndex.size()), String.valueOf(guildId),
+                    String.valueOf(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)));
+        }).onError(throwable -> {
+            synchronized (this) {
+                if (rebuildingIndex == rebuiltIndex) this.rebuildingIndex = null;
+            }
+            synchronized (banLock) {
+                if (rebuildingBans == bansDuringRebuild) this.rebuildingBans = null;
+            }
+            LogUtils.errorDiscord("Unable to load members of guild {}, the previously indexed " +
+                    "roles and bans are still used.", String.valueOf(guildId));
+            throwable.printStackTrace();
+        });
+
+        Set<String> bannedMembers = ConcurrentHashMap.newKeySet();
+        guild.retrieveBanList().forEachAsync(ban -> {
+            bannedMembers.add(ban.getUser().getId());
+            return true;
+        }).thenRun(() -> {
+            synchronized (banLock) {
+                if (rebuildingBans != bansDuringRebuild) return;
+                this.rebuildingBans = null;
+                bansDuringRebuild.forEach((memberId, banned) -> {
+                    if (banned) bannedMembers.add(memberId);
+                    else bannedMembers.remove(memberId);
+                });
+                Set<UUID> bannedPlayers = new HashSet<>();
+                bannedMembers.forEach(memberId ->
+                        verifier.getLinkIndex().getUUID(memberId).ifPresent(bannedPlayers::add));
+                verifier.getBanList().replaceSource(BanList.banSource(guildId), bannedPlayers);
+            }
+        }).exceptionally(throwable -> {
+            synchronized (banLock) {
+                if (rebuildingBans == bansDuringRebuild) this.rebuildingBans = null;
+            }
+            LogUtils.errorDiscord("Unable to retrieve bans of guild {}, the previously retrieved " +
+                    "bans are still used.", String.valueOf(guildId));
+            return null;
+        });
+    }
+
+    private void updateIndexes(Consumer<RoleIndex> update) {
+        RoleIndex pendingIndex = rebuildingIndex;
+        update.accept(roleIndex);
+        if (pendingIndex != null) update.accept(pendingIndex);
+    }
+
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    public void refreshBans() {
+        Set<String> bannedRoles = getSettings().getBannedRoles();
+        RoleIndex index = roleIndex;
+        Set<UUID> bannedPlayers = new HashSet<>();
+        bannedRoles.forEach(roleId -> index.getHolders(roleId).forEach(memberId ->
+                verifier.getLinkIndex().getUUID(memberId).ifPresent(bannedPlayers::add)));
+        verifier.getBanList().replaceSource(BanList.roleSource(guildId), bannedPlayers);
+    }
+
+    private void refreshBan(String memberId) {
+        Optional<UUID> uuidOptional = verifier.getLinkIndex().getUUID(memberId);
+        if (uuidOptional.isEmpty()) return;
+
+        Set<String> bannedRoles = getSettings().getBannedRoles();
+        boolean banned = !bannedRoles.isEmpty() && roleIndex.getRoles(memberId).stream()
+                .anyMatch(bannedRoles::contains);
+        if (banned) verifier.getBanList().add(uuidOptional.get(), BanList.roleSource(guildId));
+        else verifier.getBanList().remove(uuidOptional.get(), BanList.roleSource(guildId));
+    }
+
+    public boolean dispatch(String memberId, Runnable task) {
+        return eventExecutor.execute(memberId, task);
+    }
+
+    public int getQueuedEvents() {
+        return eventExecutor.getQueuedTasks();
+    }
+
+    public void shutdown() {
+        memberResolver.shutdown();
+        eventExecutor.shutdown();
+    }
+
+}
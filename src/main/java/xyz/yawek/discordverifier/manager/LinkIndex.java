@@ -0,0 +1,103 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.manager;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class LinkIndex {
+
+    private volatile Links links = new Links();
+    private volatile boolean loaded;
+
+    /**
+     * Replaces all links at once, lookups see either the previous or the loaded links.
+     *
+     * @return the previous links
+     */
+    public synchronized Map<String, UUID> load(Map<String, UUID> linkedAccounts) {
+        Links loadedLinks = new Links();
+        linkedAccounts.forEach(loadedLinks::link);
+        Links previousLinks = links;
+        this.links = loadedLinks;
+        loaded = true;
+        return Collections.unmodifiableMap(previousLinks.uuids);
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public synchronized void link(String memberId, UUID uuid) {
+        links.link(memberId, uuid);
+    }
+
+    public synchronized Optional<String> unlink(UUID uuid) {
+        return Optional.ofNullable(links.unlink(uuid));
+    }
+
+    public Optional<UUID> getUUID(String memberId) {
+        return Optional.ofNullable(links.uuids.get(memberId));
+    }
+
+    public Optional<String> getMemberId(UUID uuid) {
+        return Optional.ofNullable(links.memberIds.get(uuid));
+    }
+
+    public Set<UUID> getUUIDs() {
+        return Collections.unmodifiableSet(links.memberIds.keySet());
+    }
+
+    public Map<String, UUID> getLinks() {
+        return Collections.unmodifiableMap(links.uuids);
+    }
+
+    public boolean isLinked(String memberId) {
+        return links.uuids.containsKey(memberId);
+    }
+
+    public int size() {
+        return links.uuids.size();
+    }
+
+    private static class Links {
+
+        private final Map<String, UUID> uuids = new ConcurrentHashMap<>();
+        private final Map<UUID, String> memberIds = new ConcurrentHashMap<>();
+
+        private void link(String memberId, UUID uuid) {
+            unlink(uuid);
+            UUID previousUUID = uuids.put(memberId, uuid);
+            if (previousUUID != null) memberIds.remove(previousUUID, memberId);
+            memberIds.put(uuid, memberId);
+        }
+
+        private String unlink(UUID uuid) {
+            String memberId = memberIds.remove(uuid);
+            if (memberId != null) uuids.remove(memberId, uuid);
+            return memberId;
+        }
+
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.manager;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import xyz.yawek.discordverifier.util.ExpiringCache;
+import xyz.yawek.discordverifier.util.LogUtils;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class MemberResolver {
+
+    private static final int MAX_BATCH_SIZE = 100;
+    private static final long BATCH_WINDOW_MILLIS = 50;
+    private static final long RESOLVE_TIMEOUT_SECONDS = 10;
+
+    private final JDA jda;
+    private final long guildId;
+    private final ExpiringCache<String, Member> memberCache;
+    private final Map<String, CompletableFuture<Optional<Member>>> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "DiscordVerifier Member Resolver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public MemberResolver(JDA jda, long guildId, int cacheSize, long expireAfterSeconds) {
+        this.jda = jda;
+        this.guildId = guildId;
+        this.memberCache = new ExpiringCache<>(cacheSize,
+                TimeUnit.SECONDS.toMillis(expireAfterSeconds));
+    }
+
+    public Optional<Member> getCached(String memberId) {
+        Guild guild = jda.getGuildById(guildId);
+        if (guild == null) return Optional.empty();
+        Member member = guild.getMemberById(memberId);
+        if (member != null) return Optional.of(member);
+        return memberCache.get(memberId);
+    }
+
+    public CompletableFuture<Optional<Member>> retrieve(String memberId) {
+        Optional<Member> cached = getCached(memberId);
+        if (cached.isPresent()) return CompletableFuture.completedFuture(cached);
+
+        return pending.computeIfAbsent(memberId, id -> {
+            CompletableFuture<Optional<Member>> future = new CompletableFuture<>();
+            if (flushScheduled.compareAndSet(false, true)) {
+                executor.schedule(this::flush, BATCH_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            return future.completeOnTimeout(Optional.empty(),
+                    RESOLVE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        });
+    }
+
+    public void update(Member member) {
+        memberCache.put(member.getId(), member);
+    }
+
+    public void invalidate(String memberId) {
+        memberCache.invalidate(memberId);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        pending.values().forEach(future -> future.complete(Optional.empty()));
+        pending.clear();
+        memberCache.clear();
+    }
+
+    private void flush() {
+        flushScheduled.set(false);
+
+        Map<String, CompletableFuture<Optional<Member>>> batch = new HashMap<>();
+        for (String memberId : new ArrayList<>(pending.keySet())) {
+            CompletableFuture<Optional<Member>> future = pending.remove(memberId);
+            if (future == null) continue;
+            batch.put(memberId, future);
+            if (batch.size() == MAX_BATCH_SIZE) {
+                retrieveBatch(batch);
+                batch = new HashMap<>();
+            }
+        }
+        if (!batch.isEmpty()) retrieveBatch(batch);
+    }
+
+    private void retrieveBatch(Map<String, CompletableFuture<Optional<Member>>> batch) {
+        Guild guild = jda.getGuildById(guildId);
+        if (guild == null) {
+            batch.values().forEach(future -> future.complete(Optional.empty()));
+            return;
+        }
+
+        List<Long> ids = new ArrayList<>(batch.size());
+        batch.forEach((memberId, future) -> {
+            try {
+                ids.add(Long.parseLong(memberId));
+            } catch (NumberFormatException e) {
+                future.complete(Optional.empty());
+            }
+        });
+        if (ids.isEmpty()) return;
+
+        try {
+            guild.retrieveMembersByIds(ids).onSuccess(members -> {
+                for (Member member : members) {
+                    memberCache.put(member.getId(), member);
+                    CompletableFuture<Optional<Member>> future = batch.get(member.getId());
+                    if (future != null) future.complete(Optional.of(member));
+                }
+                batch.values().forEach(future -> future.complete(Optional.empty()));
+            }).onError(throwable -> {
+                LogUtils.errorDiscord("Unable to retrieve {} guild members.",
+                        String.valueOf(ids.size()));
+                batch.values().forEach(future -> future.complete(Optional.empty()));
+            });
+        } catch (RuntimeException e) {
+            LogUtils.errorDiscord("Unable to request guild members.");
+            e.printStackTrace();
+            batch.values().forEach(future -> future.complete(Optional.empty()));
+        }
+    }
+
+}
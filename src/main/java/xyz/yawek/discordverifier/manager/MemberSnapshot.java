@@ -0,0 +1,158 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.manager;
+
+import xyz.yawek.discordverifier.DiscordVerifier;
+import xyz.yawek.discordverifier.util.LogUtils;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+public class MemberSnapshot {
+
+    private static final int MAGIC = 0x44565331;
+    private static final int FORMAT_VERSION = 1;
+    private static final long SAVE_INTERVAL_MINUTES = 5;
+
+    private final DiscordVerifier verifier;
+    private final Path file;
+    private volatile long takenAt;
+
+    public MemberSnapshot(DiscordVerifier verifier) {
+        this.verifier = verifier;
+        this.file = verifier.getDataDirectory().resolve("members.snapshot");
+    }
+
+    public void load() {
+        if (!Files.exists(file)) return;
+
+        DiscordManager discord = verifier.getDiscordManager();
+        LinkIndex linkIndex = verifier.getLinkIndex();
+        int loadedMembers = 0;
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) {
+                LogUtils.error("Member snapshot {} has an unknown format, ignoring it.", file.toString());
+                return;
+            }
+            long snapshotTime = input.readLong();
+            int guildCount = input.readInt();
+            for (int i = 0; i < guildCount; i++) {
+                Optional<GuildContext> contextOptional = discord.getGuild(input.readLong());
+                int memberCount = input.readInt();
+                for (int j = 0; j < memberCount; j++) {
+                    String memberId = Long.toString(input.readLong());
+                    UUID uuid = new UUID(input.readLong(), input.readLong());
+                    String displayName = input.readUTF();
+                    int roleCount = input.readInt();
+                    List<String> roleIds = new ArrayList<>(roleCount);
+                    for (int k = 0; k < roleCount; k++) {
+                        roleIds.add(Long.toString(input.readLong()));
+                    }
+                    if (contextOptional.isEmpty()) continue;
+
+                    linkIndex.link(memberId, uuid);
+                    contextOptional.get().getRoleIndex().setMember(memberId, displayName, roleIds);
+                    loadedMembers++;
+                }
+            }
+            this.takenAt = snapshotTime;
+        } catch (IOException e) {
+            LogUtils.error("Unable to load the member snapshot.");
+            e.printStackTrace();
+            return;
+        }
+
+        discord.getGuilds().forEach(GuildContext::refreshBans);
+        LogUtils.info("Loaded {} linked members from the member snapshot taken {} seconds ago.",
+                String.valueOf(loadedMembers), String.valueOf(getAge()));
+    }
+
+    public void schedule() {
+        verifier.getServer().getScheduler().buildTask(verifier, this::save)
+                .delay(SAVE_INTERVAL_MINUTES, TimeUnit.MINUTES)
+                .repeat(SAVE_INTERVAL_MINUTES, TimeUnit.MINUTES)
+                .schedule();
+    }
+
+    public synchronized void save() {
+        DiscordManager discord = verifier.getDiscordManager();
+        if (!discord.isConnected()
+                || !discord.getGuilds().stream().allMatch(GuildContext::isIndexed)) return;
+
+        LinkIndex linkIndex = verifier.getLinkIndex();
+        long snapshotTime = System.currentTimeMillis();
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeLong(snapshotTime);
+            output.writeInt(discord.getGuilds().size());
+            for (GuildContext context : discord.getGuilds()) {
+                RoleIndex roleIndex = context.getRoleIndex();
+                Map<String, UUID> members = new LinkedHashMap<>();
+                roleIndex.getMembers().forEach(memberId ->
+                        linkIndex.getUUID(memberId).ifPresent(uuid -> members.put(memberId, uuid)));
+
+                output.writeLong(context.getGuildId());
+                output.writeInt(members.size());
+                for (Map.Entry<String, UUID> member : members.entrySet()) {
+                    Set<String> roleIds = new HashSet<>(roleIndex.getRoles(member.getKey()));
+                    output.writeLong(Long.parseLong(member.getKey()));
+                    output.writeLong(member.getValue().getMostSignificantBits());
+                    output.writeLong(member.getValue().getLeastSignificantBits());
+                    output.writeUTF(roleIndex.getDisplayName(member.getKey()).orElse(""));
+                    output.writeInt(roleIds.size());
+                    for (String roleId : roleIds) {
+                        output.writeLong(Long.parseLong(roleId));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LogUtils.error("Unable to save the member snapshot.");
+            e.printStackTrace();
+            return;
+        }
+
+        try {
+            Files.move(temporaryFile, file,
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.takenAt = snapshotTime;
+        } catch (IOException e) {
+            LogUtils.error("Unable to replace the member snapshot.");
+            e.printStackTrace();
+        }
+    }
+
+    public long getAge() {
+        if (verifier.getDiscordManager().isConnected()) return 0;
+        if (takenAt == 0) return -1;
+        return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - takenAt);
+    }
+
+    public boolean isStale() {
+        return !verifier.getDiscordManager().isConnected();
+    }
+
+}
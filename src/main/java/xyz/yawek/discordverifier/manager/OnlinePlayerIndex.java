@@ -0,0 +1,49 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.manager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+public class OnlinePlayerIndex {
+
+    private final ConcurrentSkipListMap<String, String> nicknames = new ConcurrentSkipListMap<>();
+
+    public void add(String nickname) {
+        nicknames.put(nickname.toLowerCase(Locale.ROOT), nickname);
+    }
+
+    public void remove(String nickname) {
+        nicknames.remove(nickname.toLowerCase(Locale.ROOT));
+    }
+
+    public List<String> search(String prefix, int limit) {
+        String lowerPrefix = prefix.toLowerCase(Locale.ROOT);
+        List<String> result = new ArrayList<>(Math.min(limit, nicknames.size()));
+        for (Map.Entry<String, String> entry : nicknames.tailMap(lowerPrefix).entrySet()) {
+            if (result.size() >= limit || !entry.getKey().startsWith(lowerPrefix)) break;
+            result.add(entry.getValue());
+        }
+        return result;
+    }
+
+}
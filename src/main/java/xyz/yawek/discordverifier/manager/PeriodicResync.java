@@ -0,0 +1,90 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.manager;
+
+import com.velocitypowered.api.proxy.Player;
+import xyz.yawek.discordverifier.DiscordVerifier;
+import xyz.yawek.discordverifier.config.Config;
+import xyz.yawek.discordverifier.util.Fingerprint;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+public class PeriodicResync {
+
+    private final DiscordVerifier verifier;
+    private final Set<UUID> deferred = new LinkedHashSet<>();
+    private long lastTick = -1;
+
+    public PeriodicResync(DiscordVerifier verifier) {
+        this.verifier = verifier;
+    }
+
+    public void schedule() {
+        verifier.getServer().getScheduler().buildTask(verifier, this::tick)
+                .repeat(1, TimeUnit.SECONDS)
+                .schedule();
+    }
+
+    public synchronized int getDeferred() {
+        return deferred.size();
+    }
+
+    private synchronized void tick() {
+        Config config = verifier.getConfig();
+        int period = config.periodicSyncPeriod();
+        long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        if (period <= 0 || !verifier.getDiscordManager().isConnected()) {
+            deferred.clear();
+            lastTick = now;
+            return;
+        }
+
+        long firstTick = lastTick < 0 ? now : Math.max(lastTick + 1, now - period + 1);
+        lastTick = now;
+        for (long tick = firstTick; tick <= now; tick++) {
+            long slot = Math.floorMod(tick, period);
+            for (Player player : verifier.getServer().getAllPlayers()) {
+                if (slot(player.getUniqueId(), period) == slot) deferred.add(player.getUniqueId());
+            }
+        }
+
+        int maxPerSecond = Math.max(1, config.periodicSyncMaxPerSecond());
+        Iterator<UUID> iterator = deferred.iterator();
+        for (int i = 0; i < maxPerSecond && iterator.hasNext(); i++) {
+            UUID uuid = iterator.next();
+            iterator.remove();
+            if (verifier.getServer().getPlayer(uuid).isEmpty()) continue;
+            verifier.getStatistics().increment("sync.periodic");
+            verifier.getSyncPipeline().request(uuid);
+        }
+    }
+
+    private static long slot(UUID uuid, int period) {
+        long hash = new Fingerprint()
+                .add(uuid.getMostSignificantBits())
+                .add(uuid.getLeastSignificantBits())
+                .get();
+        return Math.floorMod(hash, period);
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.manager;
+
+import xyz.yawek.discordverifier.DiscordVerifier;
+import xyz.yawek.discordverifier.config.Config;
+import xyz.yawek.discordverifier.util.ExpiringCache;
+import xyz.yawek.discordverifier.util.Statistics;
+import xyz.yawek.discordverifier.util.TokenBucket;
+
+public class RateLimiter {
+
+    private static final int MAX_TRACKED_MEMBERS = 10000;
+    private static final long BUCKET_EXPIRE_TIME = 600_000;
+
+    private final DiscordVerifier verifier;
+    private final ExpiringCache<String, TokenBucket> memberBuckets =
+            new ExpiringCache<>(MAX_TRACKED_MEMBERS, BUCKET_EXPIRE_TIME, true);
+    private final ExpiringCache<String, TokenBucket> channelBuckets =
+            new ExpiringCache<>(MAX_TRACKED_MEMBERS, BUCKET_EXPIRE_TIME, true);
+
+    public RateLimiter(DiscordVerifier verifier) {
+        this.verifier = verifier;
+    }
+
+    // Both buckets are checked before either is consumed, so a dropped event costs no tokens.
+    public synchronized boolean tryAcquire(String channelId, String memberId) {
+        Config config = verifier.getConfig();
+        Statistics statistics = verifier.getStatistics();
+
+        TokenBucket memberBucket = memberBuckets.computeIfAbsent(memberId, id ->
+                new TokenBucket(config.memberRateLimitCapacity(), config.memberRateLimitRefill()));
+        if (!memberBucket.canConsume()) {
+            statistics.increment("rate-limit.member-dropped");
+            return false;
+        }
+        TokenBucket channelBucket = channelBuckets.computeIfAbsent(channelId, id ->
+                new TokenBucket(config.channelRateLimitCapacity(), config.channelRateLimitRefill()));
+        if (!channelBucket.canConsume()) {
+            statistics.increment("rate-limit.channel-dropped");
+            return false;
+        }
+        memberBucket.tryConsume();
+        channelBucket.tryConsume();
+        statistics.increment("rate-limit.allowed");
+        return true;
+    }
+
+    public void clear() {
+        memberBuckets.clear();
+        channelBuckets.clear();
+    }
+
+}
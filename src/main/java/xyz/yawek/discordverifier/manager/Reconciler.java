@@ -0,0 +1,244 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.manager;
+
+import com.velocitypowered.api.command.CommandSource;
+import xyz.yawek.discordverifier.DiscordVerifier;
+import xyz.yawek.discordverifier.config.Config;
+import xyz.yawek.discordverifier.util.LogUtils;
+import xyz.yawek.discordverifier.util.TokenBucket;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Reconciler {
+
+    private static final long CHECKPOINT_INTERVAL_MILLIS = 5000;
+    private static final long BUDGET_WAIT_MILLIS = 50;
+    private static final int REPORT_STEP_PERCENT = 10;
+
+    private final DiscordVerifier verifier;
+    private final Path checkpointFile;
+    private final AtomicInteger completed = new AtomicInteger();
+    private final BitSet done = new BitSet();
+    private volatile Thread worker;
+    private volatile boolean stopRequested;
+    private volatile int total;
+    private volatile long startedAt;
+    private List<UUID> uuids = Collections.emptyList();
+    private int firstPending;
+
+    public Reconciler(DiscordVerifier verifier) {
+        this.verifier = verifier;
+        this.checkpointFile = verifier.getDataDirectory().resolve("reconcile.checkpoint");
+    }
+
+    public synchronized boolean start(CommandSource reporter) {
+        if (isRunning()) return false;
+        if (!verifier.getLinkIndex().isLoaded())
+            throw new IllegalStateException("Linked accounts are not loaded yet.");
+
+        List<UUID> linkedUUIDs = new ArrayList<>(verifier.getLinkIndex().getUUIDs());
+        Collections.sort(linkedUUIDs);
+        int startPosition = readCheckpoint()
+                .map(uuid -> Collections.binarySearch(linkedUUIDs, uuid))
+                .map(position -> position >= 0 ? position + 1 : -position - 1)
+                .orElse(0);
+
+        this.uuids = linkedUUIDs;
+        this.total = linkedUUIDs.size();
+        this.firstPending = startPosition;
+        this.startedAt = System.nanoTime();
+        this.stopRequested = false;
+        done.clear();
+        completed.set(startPosition);
+
+        reporter.sendMessage(verifier.getConfig().syncStarted(
+                total - startPosition, total));
+        Thread thread = new Thread(() -> run(reporter, startPosition),
+                "DiscordVerifier Reconciler");
+        thread.setDaemon(true);
+        this.worker = thread;
+        thread.start();
+        return true;
+    }
+
+    public void resume() {
+        if (!Files.exists(checkpointFile)) return;
+        if (!verifier.getLinkIndex().isLoaded()) {
+            LogUtils.error("Linked accounts are not loaded, the interrupted reconciliation is not resumed.");
+            return;
+        }
+        start(verifier.getServer().getConsoleCommandSource());
+    }
+
+    public boolean stop() {
+        Thread thread = worker;
+        if (thread == null || !thread.isAlive()) return false;
+        stopRequested = true;
+        thread.interrupt();
+        return true;
+    }
+
+    public void shutdown() {
+        Thread thread = worker;
+        if (!stop()) return;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isRunning() {
+        Thread thread = worker;
+        return thread != null && thread.isAlive();
+    }
+
+    public int getCompleted() {
+        return completed.get();
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    private void run(CommandSource reporter, int startPosition) {
+        Config config = verifier.getConfig();
+        SyncPipeline pipeline = verifier.getSyncPipeline();
+        int concurrency = Math.max(1, config.reconcileConcurrency());
+        Semaphore permits = new Semaphore(concurrency);
+        double restPerSecond = config.reconcileRestPerSecond();
+        TokenBucket budget = restPerSecond > 0 ? new TokenBucket(restPerSecond, restPerSecond) : null;
+
+        long lastCheckpoint = System.currentTimeMillis();
+        int lastReportedPercent = percent(startPosition);
+        try {
+            for (int i = startPosition; i < uuids.size() && !stopRequested; i++) {
+                UUID uuid = uuids.get(i);
+                permits.acquire();
+
+                int plannedCalls = plannedRestCalls(uuid);
+                while (budget != null && plannedCalls > 0 && !budget.tryConsume(plannedCalls)) {
+                    Thread.sleep(BUDGET_WAIT_MILLIS);
+                }
+
+                int position = i;
+                pipeline.sync(uuid).whenComplete((result, throwable) -> {
+                    markDone(position);
+                    permits.release();
+                });
+
+                if (System.currentTimeMillis() - lastCheckpoint >= CHECKPOINT_INTERVAL_MILLIS) {
+                    writeCheckpoint();
+                    lastCheckpoint = System.currentTimeMillis();
+                }
+                int percent = percent(completed.get());
+                if (percent >= lastReportedPercent + REPORT_STEP_PERCENT) {
+                    reporter.sendMessage(config.syncProgress(completed.get(), total, percent));
+                    lastReportedPercent = percent - percent % REPORT_STEP_PERCENT;
+                }
+            }
+            permits.acquire(concurrency);
+        } catch (InterruptedException e) {
+            stopRequested = true;
+        }
+
+        if (stopRequested) {
+            writeCheckpoint();
+            LogUtils.info("Reconciliation stopped after {} of {} linked players.",
+                    String.valueOf(completed.get()), String.valueOf(total));
+            return;
+        }
+        deleteCheckpoint();
+        reporter.sendMessage(config.syncFinished(total - startPosition,
+                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startedAt)));
+    }
+
+    private int plannedRestCalls(UUID uuid) {
+        DiscordManager discord = verifier.getDiscordManager();
+        Optional<String> memberIdOptional = verifier.getLinkIndex().getMemberId(uuid);
+        if (memberIdOptional.isEmpty()) return 0;
+
+        int calls = 0;
+        for (GuildContext context : discord.getGuilds()) {
+            if (context.isIndexed() && !context.getRoleIndex().contains(memberIdOptional.get()))
+                continue;
+            calls++;
+        }
+        if (calls > 0 && verifier.getConfig().nicknameSyncEnabled()) calls++;
+        return calls;
+    }
+
+    private synchronized void markDone(int position) {
+        completed.incrementAndGet();
+        done.set(position);
+        while (done.get(firstPending)) {
+            firstPending++;
+        }
+    }
+
+    private int percent(int count) {
+        return total == 0 ? 100 : (int) (count * 100L / total);
+    }
+
+    private Optional<UUID> readCheckpoint() {
+        if (!Files.exists(checkpointFile)) return Optional.empty();
+        try {
+            return Optional.of(UUID.fromString(Files.readString(checkpointFile).trim()));
+        } catch (IOException | IllegalArgumentException e) {
+            LogUtils.error("Unable to read the reconciliation checkpoint, starting from the beginning.");
+            return Optional.empty();
+        }
+    }
+
+    private void writeCheckpoint() {
+        UUID lastDone;
+        synchronized (this) {
+            if (firstPending == 0) return;
+            lastDone = uuids.get(firstPending - 1);
+        }
+
+        Path temporaryFile = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        try {
+            Files.writeString(temporaryFile, lastDone.toString());
+            Files.move(temporaryFile, checkpointFile,
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LogUtils.error("Unable to save the reconciliation checkpoint.");
+            e.printStackTrace();
+        }
+    }
+
+    private void deleteCheckpoint() {
+        try {
+            Files.deleteIfExists(checkpointFile);
+        } catch (IOException e) {
+            LogUtils.error("Unable to delete the reconciliation checkpoint.");
+            e.printStackTrace();
+        }
+    }
+
+}
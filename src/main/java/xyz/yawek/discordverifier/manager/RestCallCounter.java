@@ -0,0 +1,56 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.manager;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.jetbrains.annotations.NotNull;
+import xyz.yawek.discordverifier.util.Statistics;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+public class RestCallCounter implements Interceptor {
+
+    private static final Pattern API_VERSION = Pattern.compile("^/api/v\\d+");
+    private static final Pattern SNOWFLAKE = Pattern.compile("\\d{15,}");
+    private static final Pattern TOKEN = Pattern.compile("(interactions|webhooks)/\\{id}/[^/]+");
+
+    private final Statistics statistics;
+
+    public RestCallCounter(Statistics statistics) {
+        this.statistics = statistics;
+    }
+
+    @Override
+    public @NotNull Response intercept(@NotNull Chain chain) throws IOException {
+        Request request = chain.request();
+        statistics.increment("rest.total");
+        statistics.increment("rest." + request.method() + " " + route(request.url().encodedPath()));
+        return chain.proceed(request);
+    }
+
+    public static String route(String path) {
+        String route = API_VERSION.matcher(path).replaceFirst("");
+        route = SNOWFLAKE.matcher(route).replaceAll("{id}");
+        return TOKEN.matcher(route).replaceAll("$1/{id}/{token}");
+    }
+
+}
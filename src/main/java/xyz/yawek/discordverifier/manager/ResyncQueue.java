@@ -0,0 +1,157 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.manager;
+
+import net.luckperms.api.model.user.UserManager;
+import net.luckperms.api.node.matcher.NodeMatcher;
+import xyz.yawek.discordverifier.DiscordVerifier;
+import xyz.yawek.discordverifier.role.RuleTable;
+import xyz.yawek.discordverifier.util.LogUtils;
+import xyz.yawek.discordverifier.util.TokenBucket;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+public class ResyncQueue {
+
+    private final DiscordVerifier verifier;
+    private final boolean login;
+    private final IntSupplier perSecond;
+    private final Set<UUID> pending = new LinkedHashSet<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private TokenBucket budget;
+    private int budgetRate;
+
+    public ResyncQueue(DiscordVerifier verifier, boolean login, IntSupplier perSecond) {
+        this.verifier = verifier;
+        this.login = login;
+        this.perSecond = perSecond;
+    }
+
+    public void schedule() {
+        verifier.getServer().getScheduler().buildTask(verifier, this::drain)
+                .repeat(1, TimeUnit.SECONDS)
+                .schedule();
+    }
+
+    public void enqueue(UUID uuid) {
+        enqueue(Collections.singleton(uuid));
+    }
+
+    public int enqueue(Collection<UUID> uuids) {
+        int queued;
+        synchronized (this) {
+            int sizeBefore = pending.size();
+            pending.addAll(uuids);
+            queued = pending.size() - sizeBefore;
+        }
+        drain();
+        return queued;
+    }
+
+    public void enqueueChanges(Map<Long, RuleTable> previousRules, List<String> previousPermissions) {
+        LinkIndex linkIndex = verifier.getLinkIndex();
+        if (!previousPermissions.equals(verifier.getConfig().verificationPermissions())) {
+            int queued = enqueue(linkIndex.getUUIDs());
+            LogUtils.info("Verification permissions changed, resynchronizing {} linked players.",
+                    String.valueOf(queued));
+            return;
+        }
+
+        Set<UUID> uuids = new HashSet<>();
+        Set<String> changedGroups = new HashSet<>();
+        int changedRoles = 0;
+        for (GuildContext context : verifier.getDiscordManager().getGuilds()) {
+            RuleTable previous = previousRules.getOrDefault(context.getGuildId(), RuleTable.EMPTY);
+            RuleTable current = context.getRules();
+            changedGroups.addAll(current.changedGroups(previous));
+            for (String roleId : current.changedRoles(previous)) {
+                changedRoles++;
+                context.getRoleIndex().getHolders(roleId).forEach(memberId ->
+                        linkIndex.getUUID(memberId).ifPresent(uuids::add));
+            }
+        }
+        if (changedRoles == 0 && changedGroups.isEmpty()) return;
+
+        UserManager userManager = verifier.getLuckPerms().getUserManager();
+        List<CompletableFuture<Void>> searches = changedGroups.stream()
+                .map(groupName -> userManager.searchAll(NodeMatcher.key("group." + groupName))
+                        .thenAccept(holders -> {
+                            synchronized (uuids) {
+                                holders.keySet().stream()
+                                        .filter(uuid -> linkIndex.getMemberId(uuid).isPresent())
+                                        .forEach(uuids::add);
+                            }
+                        }))
+                .toList();
+        int roleCount = changedRoles;
+        CompletableFuture.allOf(searches.toArray(new CompletableFuture[0])).whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                LogUtils.error("Unable to look up players of the changed groups, only holders " +
+                        "of the changed roles are resynchronized.");
+                throwable.printStackTrace();
+            }
+            int queued;
+            synchronized (uuids) {
+                queued = enqueue(uuids);
+            }
+            LogUtils.info("Mappings of {} roles and {} groups changed, resynchronizing {} linked players.",
+                    String.valueOf(roleCount), String.valueOf(changedGroups.size()), String.valueOf(queued));
+        });
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    private void drain() {
+        int concurrency = Math.max(1, verifier.getConfig().reconcileConcurrency());
+        while (inFlight.get() < concurrency) {
+            Optional<UUID> uuidOptional = poll();
+            if (uuidOptional.isEmpty()) return;
+
+            inFlight.incrementAndGet();
+            verifier.getSyncPipeline().request(uuidOptional.get(), login)
+                    .whenComplete((result, throwable) -> {
+                        inFlight.decrementAndGet();
+                        drain();
+                    });
+        }
+    }
+
+    private synchronized Optional<UUID> poll() {
+        Iterator<UUID> iterator = pending.iterator();
+        if (!iterator.hasNext()) return Optional.empty();
+
+        int rate = Math.max(1, perSecond.getAsInt());
+        if (budget == null || budgetRate != rate) {
+            budget = new TokenBucket(rate, rate);
+            budgetRate = rate;
+        }
+        if (!budget.tryConsume()) return Optional.empty();
+
+        UUID uuid = iterator.next();
+        iterator.remove();
+        return Optional.of(uuid);
+    }
+
+}
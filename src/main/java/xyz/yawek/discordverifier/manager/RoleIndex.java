@@ -0,0 +1,96 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.manager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class RoleIndex {
+
+    private final Map<String, Set<String>> holders = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> memberRoles = new ConcurrentHashMap<>();
+    private final Map<String, String> displayNames = new ConcurrentHashMap<>();
+
+    public synchronized void setMember(String memberId, String displayName, Collection<String> roleIds) {
+        removeMember(memberId);
+        memberRoles.put(memberId, ConcurrentHashMap.newKeySet());
+        displayNames.put(memberId, displayName);
+        addRoles(memberId, roleIds);
+    }
+
+    public synchronized void addRoles(String memberId, Collection<String> roleIds) {
+        Set<String> roles = memberRoles.get(memberId);
+        if (roles == null) return;
+        roles.addAll(roleIds);
+        roleIds.forEach(roleId ->
+                holders.computeIfAbsent(roleId, id -> ConcurrentHashMap.newKeySet()).add(memberId));
+    }
+
+    public synchronized void removeRoles(String memberId, Collection<String> roleIds) {
+        Set<String> roles = memberRoles.get(memberId);
+        if (roles == null) return;
+        roles.removeAll(roleIds);
+        roleIds.forEach(roleId -> removeHolder(roleId, memberId));
+    }
+
+    public synchronized void removeMember(String memberId) {
+        displayNames.remove(memberId);
+        Set<String> roles = memberRoles.remove(memberId);
+        if (roles == null) return;
+        roles.forEach(roleId -> removeHolder(roleId, memberId));
+    }
+
+    public Set<String> getHolders(String roleId) {
+        Set<String> roleHolders = holders.get(roleId);
+        return roleHolders != null ? Collections.unmodifiableSet(roleHolders) : Collections.emptySet();
+    }
+
+    public Set<String> getRoles(String memberId) {
+        Set<String> roles = memberRoles.get(memberId);
+        return roles != null ? Collections.unmodifiableSet(roles) : Collections.emptySet();
+    }
+
+    public Optional<String> getDisplayName(String memberId) {
+        return Optional.ofNullable(displayNames.get(memberId));
+    }
+
+    public Set<String> getMembers() {
+        return Collections.unmodifiableSet(memberRoles.keySet());
+    }
+
+    public boolean contains(String memberId) {
+        return memberRoles.containsKey(memberId);
+    }
+
+    public int size() {
+        return memberRoles.size();
+    }
+
+    private void removeHolder(String roleId, String memberId) {
+        Set<String> roleHolders = holders.get(roleId);
+        if (roleHolders == null) return;
+        roleHolders.remove(memberId);
+        if (roleHolders.isEmpty()) holders.remove(roleId);
+    }
+
+}
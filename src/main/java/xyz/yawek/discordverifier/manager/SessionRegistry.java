@@ -0,0 +1,62 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.manager;
+
+import xyz.yawek.discordverifier.user.VerifiableUser;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class SessionRegistry {
+
+    private final Map<UUID, CompletableFuture<VerifiableUser>> sessions = new ConcurrentHashMap<>();
+
+    public void open(UUID uuid, CompletableFuture<VerifiableUser> userFuture) {
+        sessions.put(uuid, userFuture.thenApply(user -> user.toBuilder().online(true).build()));
+    }
+
+    public Optional<VerifiableUser> get(UUID uuid) {
+        CompletableFuture<VerifiableUser> userFuture = sessions.get(uuid);
+        if (userFuture == null) return Optional.empty();
+        try {
+            return Optional.of(userFuture.join());
+        } catch (CompletionException e) {
+            sessions.remove(uuid, userFuture);
+            return Optional.empty();
+        }
+    }
+
+    public void update(VerifiableUser user) {
+        sessions.computeIfPresent(user.getUUID(), (uuid, userFuture) ->
+                CompletableFuture.completedFuture(user.toBuilder().online(true).build()));
+    }
+
+    public void close(UUID uuid) {
+        sessions.remove(uuid);
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+}
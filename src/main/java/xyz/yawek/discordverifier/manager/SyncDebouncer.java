@@ -0,0 +1,98 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.manager;
+
+import xyz.yawek.discordverifier.DiscordVerifier;
+import xyz.yawek.discordverifier.config.Config;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+public class SyncDebouncer {
+
+    private final DiscordVerifier verifier;
+    private final Map<UUID, PendingSync> pending = new HashMap<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "DiscordVerifier Sync Debouncer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SyncDebouncer(DiscordVerifier verifier) {
+        this.verifier = verifier;
+    }
+
+    public synchronized CompletableFuture<Void> request(UUID uuid, boolean login) {
+        Config config = verifier.getConfig();
+        long now = System.currentTimeMillis();
+
+        PendingSync sync = pending.get(uuid);
+        if (sync == null) {
+            sync = new PendingSync(now, login);
+            pending.put(uuid, sync);
+            verifier.getStatistics().increment("sync.requested");
+        } else {
+            sync.task.cancel(false);
+            sync.login &= login;
+            verifier.getStatistics().increment("sync.merged");
+        }
+
+        long delay = Math.min(config.syncDebounceDelay(),
+                sync.firstRequest + config.syncDebounceMaxDelay() - now);
+        int generation = ++sync.generation;
+        PendingSync scheduledSync = sync;
+        sync.task = executor.schedule(() -> fire(uuid, scheduledSync, generation),
+                Math.max(0, delay), TimeUnit.MILLISECONDS);
+        return sync.future;
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void fire(UUID uuid, PendingSync sync, int generation) {
+        synchronized (this) {
+            if (sync.generation != generation || !pending.remove(uuid, sync)) return;
+        }
+        verifier.getSyncPipeline().sync(uuid, false, sync.login)
+                .whenComplete((result, throwable) -> sync.future.complete(null));
+    }
+
+    private static class PendingSync {
+
+        private final long firstRequest;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private boolean login;
+        private int generation;
+        private ScheduledFuture<?> task;
+
+        private PendingSync(long firstRequest, boolean login) {
+            this.firstRequest = firstRequest;
+            this.login = login;
+        }
+
+    }
+
+}
@@ -0,0 +1,321 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.manager;
+
+import com.velocitypowered.api.proxy.Player;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.model.user.UserManager;
+import net.luckperms.api.node.Node;
+import xyz.yawek.discordverifier.DiscordVerifier;
+import xyz.yawek.discordverifier.config.Config;
+import xyz.yawek.discordverifier.config.GuildSettings;
+import xyz.yawek.discordverifier.role.GroupRole;
+import xyz.yawek.discordverifier.role.RoleGroup;
+import xyz.yawek.discordverifier.user.VerifiableUser;
+import xyz.yawek.discordverifier.util.Fingerprint;
+import xyz.yawek.discordverifier.util.KeyedSequencer;
+import xyz.yawek.discordverifier.util.LogUtils;
+import xyz.yawek.discordverifier.util.NodeKeyIndex;
+import xyz.yawek.discordverifier.util.Statistics;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class SyncPipeline {
+
+    private final DiscordVerifier verifier;
+    private final Map<UUID, Long> fingerprints = new ConcurrentHashMap<>();
+    private final SyncDebouncer debouncer;
+    private final KeyedSequencer<UUID> sequencer = new KeyedSequencer<>("DiscordVerifier Sync Worker",
+            Runtime.getRuntime().availableProcessors());
+
+    public SyncPipeline(DiscordVerifier verifier) {
+        this.verifier = verifier;
+        this.debouncer = new SyncDebouncer(verifier);
+
+        Statistics statistics = verifier.getStatistics();
+        statistics.registerGauge("sync.skip-rate-percent", () -> {
+            long skipped = statistics.get("sync.skipped");
+            long total = skipped + statistics.get("sync.applied");
+            return total == 0 ? 0 : skipped * 100 / total;
+        });
+    }
+
+    public CompletableFuture<Void> request(UUID uuid) {
+        return request(uuid, false);
+    }
+
+    public CompletableFuture<Void> request(UUID uuid, boolean login) {
+        return debouncer.request(uuid, login);
+    }
+
+    public int getPendingRequests() {
+        return debouncer.size();
+    }
+
+    public int getSequencedUsers() {
+        return sequencer.size();
+    }
+
+    public void shutdown() {
+        debouncer.shutdown();
+        sequencer.shutdown();
+    }
+
+    public void invalidate(UUID uuid) {
+        fingerprints.remove(uuid);
+    }
+
+    public CompletableFuture<Void> sync(UUID uuid) {
+        return sync(uuid, false, false);
+    }
+
+    public CompletableFuture<Void> sync(UUID uuid, boolean remove, boolean login) {
+        return sequencer.submit(uuid, () -> run(verifier.getUserManager().create(uuid), remove, login));
+    }
+
+    public CompletableFuture<Void> sync(VerifiableUser user, boolean remove, boolean login) {
+        return sequencer.submit(user.getUUID(), () -> run(user, remove, login));
+    }
+
+    private CompletableFuture<Void> run(VerifiableUser user, boolean remove, boolean login) {
+        DiscordManager discord = verifier.getDiscordManager();
+        UUID uuid = user.getUUID();
+
+        CompletableFuture<List<Member>> membersFuture =
+                user.getDiscordId().isPresent() && discord.isConnected()
+                        ? discord.retrieveMembers(user.getDiscordId().get())
+                        : CompletableFuture.completedFuture(Collections.emptyList());
+
+        UserManager userManager = verifier.getLuckPerms().getUserManager();
+        return membersFuture.thenCompose(members -> userManager.loadUser(uuid)
+                .thenCompose(lpUser -> apply(user, members, lpUser, remove, login)))
+                .exceptionally(throwable -> {
+                    LogUtils.error("Unable to synchronize the player with UUID {}.", uuid.toString());
+                    throwable.printStackTrace();
+                    return null;
+                });
+    }
+
+    private CompletableFuture<Void> apply(VerifiableUser user, List<Member> members, User lpUser,
+                                          boolean remove, boolean login) {
+        Statistics statistics = verifier.getStatistics();
+        UUID uuid = user.getUUID();
+
+        NodeKeyIndex nodes = new NodeKeyIndex(lpUser);
+        Map<GuildSettings, Set<String>> memberRoles = user.getDiscordId().isPresent()
+                ? memberRoles(user.getDiscordId().get(), members) : Collections.emptyMap();
+
+        long fingerprint = fingerprint(user, members, memberRoles, nodes);
+        Long lastFingerprint = fingerprints.get(uuid);
+        if (!remove && lastFingerprint != null && lastFingerprint == fingerprint) {
+            statistics.increment("sync.skipped");
+            return CompletableFuture.completedFuture(null);
+        }
+        statistics.increment("sync.applied");
+
+        boolean modified = applyGroups(nodes, memberRoles, remove);
+        modified |= applyPermissions(nodes, remove || !user.isVerified());
+        // The sequencer slot is released only once LuckPerms has saved, so the next sync of this
+        // player loads the saved data.
+        CompletableFuture<Void> saved = modified
+                ? verifier.getLuckPerms().getUserManager().saveUser(lpUser)
+                : CompletableFuture.completedFuture(null);
+
+        boolean changed = modified;
+        for (Member member : members) {
+            changed |= applyRoles(nodes, member, remove);
+        }
+        if (!remove) changed |= applyNickname(user, members, login);
+
+        // Fingerprints of roles read from the snapshot are not kept, so the player is synchronized
+        // again once the bot is connected. Neither are those of logins that skipped the nicknames.
+        boolean stale = verifier.getMemberSnapshot().isStale();
+        Config config = verifier.getConfig();
+        boolean nicknamesSkipped = login && config.nicknameSyncEnabled() && !config.forceNicknames();
+        if (!remove && !changed && !stale && !nicknamesSkipped) fingerprints.put(uuid, fingerprint);
+        else fingerprints.remove(uuid);
+        return saved;
+    }
+
+    private long fingerprint(VerifiableUser user, List<Member> members,
+                             Map<GuildSettings, Set<String>> memberRoles,
+                             NodeKeyIndex nodes) {
+        Config config = verifier.getConfig();
+        DiscordManager discord = verifier.getDiscordManager();
+        List<String> permissions = config.verificationPermissions();
+
+        Fingerprint fingerprint = new Fingerprint()
+                .add(config.version())
+                .add(user.isVerified())
+                .add(user.getDiscordId().orElse(null));
+        memberRoles.forEach((settings, roleIds) -> {
+            fingerprint.add(settings.getGuildId());
+            fingerprint.add(discord.getGuild(settings.getGuildId())
+                    .map(context -> context.getRules().getVersion())
+                    .orElse(0L));
+            roleIds.stream().sorted().forEach(fingerprint::add);
+        });
+        nodes.keys().stream()
+                .filter(key -> key.startsWith("group.") || permissions.contains(key))
+                .sorted()
+                .forEach(fingerprint::add);
+        if (config.nicknameSyncEnabled()) {
+            fingerprint.add(verifier.getServer().getPlayer(user.getUUID())
+                    .map(Player::getUsername)
+                    .orElse(null));
+            members.forEach(member -> fingerprint.add(member.getNickname()));
+        }
+        return fingerprint.get();
+    }
+
+    private Map<GuildSettings, Set<String>> memberRoles(String memberId, List<Member> members) {
+        DiscordManager discord = verifier.getDiscordManager();
+        if (verifier.getMemberSnapshot().isStale()) {
+            verifier.getStatistics().increment("sync.from-snapshot");
+            return discord.getIndexedRoles(memberId);
+        }
+
+        Map<GuildSettings, Set<String>> memberRoles = new LinkedHashMap<>();
+        members.forEach(member -> discord.getGuild(member.getGuild()).ifPresent(context -> {
+            Set<String> roleIds = new HashSet<>();
+            member.getRoles().forEach(role -> roleIds.add(role.getId()));
+            memberRoles.put(context.getSettings(), roleIds);
+        }));
+        return memberRoles;
+    }
+
+    private List<RoleGroup> roleGroups(GuildSettings settings) {
+        return verifier.getDiscordManager().getGuild(settings.getGuildId())
+                .map(context -> context.getRules().getRoleGroups())
+                .orElse(Collections.emptyList());
+    }
+
+    private boolean applyGroups(NodeKeyIndex nodes, Map<GuildSettings, Set<String>> memberRoles,
+                                boolean remove) {
+        List<RoleGroup> groupSet = new ArrayList<>();
+        Set<String> grantedGroups = new HashSet<>();
+        memberRoles.forEach((settings, roleIds) -> {
+            for (RoleGroup roleGroup : roleGroups(settings)) {
+                groupSet.add(roleGroup);
+                if (roleIds.contains(roleGroup.getRoleId())) grantedGroups.add(roleGroup.getGroupName());
+            }
+        });
+
+        boolean modified = false;
+        for (RoleGroup roleGroup : groupSet) {
+            Node pNode = Node.builder("group." + roleGroup.getGroupName()).build();
+            boolean hasPerm = nodes.has(pNode.getKey());
+            boolean hasRole = grantedGroups.contains(roleGroup.getGroupName());
+
+            if (hasPerm && (remove || !hasRole)) {
+                modified = true;
+                nodes.remove(pNode);
+                if (roleGroup.usesTrack()) {
+                    String defaultGroup = roleGroup.getDefaultGroup();
+                    if (defaultGroup != null) nodes.add(Node.builder("group." + defaultGroup).build());
+                }
+            } else if (!remove && (!hasPerm && hasRole)) {
+                modified = true;
+
+                if (roleGroup.usesTrack()) {
+                    if (roleGroup.getTrack() == null) continue;
+
+                    for (String trackGroup : roleGroup.getTrackGroups()) {
+                        Node node = Node.builder("group." + trackGroup).build();
+                        if (!nodes.has(node.getKey())) continue;
+                        nodes.remove(node);
+                    }
+                }
+
+                nodes.add(pNode);
+            }
+        }
+        return modified;
+    }
+
+    private boolean applyPermissions(NodeKeyIndex nodes, boolean shouldRemove) {
+        boolean modified = false;
+        for (String perm : verifier.getConfig().verificationPermissions()) {
+            boolean hasPerm = nodes.has(perm);
+            if (shouldRemove != hasPerm) continue;
+
+            modified = true;
+
+            if (shouldRemove) nodes.remove(Node.builder(perm).build());
+            else nodes.add(Node.builder(perm).build());
+        }
+        return modified;
+    }
+
+    private boolean applyRoles(NodeKeyIndex nodes, Member member, boolean remove) {
+        Config config = verifier.getConfig();
+        DiscordManager discord = verifier.getDiscordManager();
+
+        Optional<GuildContext> contextOptional = discord.getGuild(member.getGuild());
+        if (contextOptional.isEmpty()) return false;
+
+        List<Role> currentRoles = member.getRoles();
+        List<Role> rolesToAdd = new ArrayList<>();
+        List<Role> rolesToRemove = new ArrayList<>();
+        boolean roleAssigned = false;
+        for (GroupRole groupRole : contextOptional.get().getRules().getGroupRoles()) {
+            Role role = groupRole.getRole();
+            boolean hasNode = !remove && nodes.has("group." + groupRole.getGroupName());
+
+            if (hasNode && (!roleAssigned || !config.oneRoleLimit())) {
+                if (!currentRoles.contains(role)) rolesToAdd.add(role);
+                roleAssigned = true;
+            } else if (currentRoles.contains(role)) {
+                rolesToRemove.add(role);
+            }
+        }
+        discord.modifyRoles(member, rolesToAdd, rolesToRemove);
+        return !rolesToAdd.isEmpty() || !rolesToRemove.isEmpty();
+    }
+
+    private boolean applyNickname(VerifiableUser user, List<Member> members, boolean login) {
+        Config config = verifier.getConfig();
+
+        if (!config.nicknameSyncEnabled() || (login && !config.forceNicknames())) return false;
+        if (!user.isVerified() || user.getDiscordId().isEmpty()) return false;
+
+        boolean discordToMinecraft = config.nicknameSyncDiscordToMinecraft();
+        if (discordToMinecraft) {
+          // todo; not implemented (probably requires some other plugin, maybe later)
+          return false;
+        }
+
+        Optional<String> nicknameOptional = verifier.getServer().getPlayer(user.getUUID())
+                .map(Player::getUsername)
+                .or(user::getLastNickname);
+        if (nicknameOptional.isEmpty()) return false;
+
+        String nickname = nicknameOptional.get();
+        List<Member> renamedMembers = members.stream()
+                .filter(member -> !nickname.equals(member.getNickname()))
+                .toList();
+        renamedMembers.forEach(member -> verifier.getDiscordManager().setNickname(member, nickname));
+        return !renamedMembers.isEmpty();
+    }
+
+}
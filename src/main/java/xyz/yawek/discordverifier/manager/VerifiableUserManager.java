@@ -34,6 +34,10 @@ public class VerifiableUserManager {
     }
 
     public VerifiableUser create(UUID uuid) {
+        return verifier.getSessionRegistry().get(uuid).orElseGet(() -> load(uuid));
+    }
+
+    public VerifiableUser load(UUID uuid) {
         DataProvider data = verifier.getDataProvider();
 
         VerifiableUser.VerifiableUserBuilder builder = VerifiableUser.builder(uuid);
@@ -52,12 +56,20 @@ public class VerifiableUserManager {
     }
 
     public Optional<VerifiableUser> retrieveByNickname(String nickname) {
+        Optional<VerifiableUser> sessionOptional = verifier.getServer().getPlayer(nickname)
+                .flatMap(player -> verifier.getSessionRegistry().get(player.getUniqueId()));
+        if (sessionOptional.isPresent()) return sessionOptional;
+
         Optional<UUID> uuidOptional = verifier.getDataProvider().getUUID(nickname);
         if (uuidOptional.isEmpty()) return Optional.empty();
         return Optional.of(create(uuidOptional.get()));
     }
 
     public Optional<VerifiableUser> retrieveByMemberId(String memberId) {
+        Optional<VerifiableUser> sessionOptional = verifier.getLinkIndex().getUUID(memberId)
+                .flatMap(uuid -> verifier.getSessionRegistry().get(uuid));
+        if (sessionOptional.isPresent()) return sessionOptional;
+
         Optional<UUID> uuidOptional =
                 verifier.getDataProvider().getUUIDByDiscordId(memberId);
         if (uuidOptional.isEmpty()) return Optional.empty();
@@ -66,6 +78,7 @@ public class VerifiableUserManager {
 
     public void updateUser(VerifiableUser user) {
         verifier.getDataProvider().updateUser(user);
+        verifier.getSessionRegistry().update(user);
     }
 
 }
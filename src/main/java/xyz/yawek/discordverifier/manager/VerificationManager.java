@@ -19,32 +19,122 @@
 package xyz.yawek.discordverifier.manager;
 
 import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
 import net.dv8tion.jda.api.entities.Member;
-import net.dv8tion.jda.api.entities.Role;
-import net.luckperms.api.model.user.User;
-import net.luckperms.api.model.user.UserManager;
-import net.luckperms.api.node.Node;
-import net.luckperms.api.track.Track;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.interactions.InteractionHook;
 import xyz.yawek.discordverifier.DiscordVerifier;
 import xyz.yawek.discordverifier.config.Config;
-import xyz.yawek.discordverifier.role.GroupRole;
-import xyz.yawek.discordverifier.role.RoleGroup;
 import xyz.yawek.discordverifier.user.VerifiableUser;
+import xyz.yawek.discordverifier.util.ExpiringCache;
 import xyz.yawek.discordverifier.util.LogUtils;
 
+import java.security.SecureRandom;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 public class VerificationManager {
 
+    private static final int LINK_CODE_CACHE_SIZE = 10000;
+    private static final long LINK_CODE_EXPIRE_MINUTES = 10;
+    private static final String LINK_CODE_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567";
+    private static final int LINK_CODE_LENGTH = 10;
+    private static final int MAX_FAILED_LINK_ATTEMPTS = 5;
+
     private final DiscordVerifier verifier;
     private final ConcurrentHashMap<Player, Member> verifyingPlayers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Player, InteractionHook> interactionHooks = new ConcurrentHashMap<>();
+    private final ExpiringCache<String, PendingLink> linkCodes = new ExpiringCache<>(
+            LINK_CODE_CACHE_SIZE, TimeUnit.MINUTES.toMillis(LINK_CODE_EXPIRE_MINUTES));
+    private final ExpiringCache<UUID, String> issuedCodes = new ExpiringCache<>(
+            LINK_CODE_CACHE_SIZE, TimeUnit.MINUTES.toMillis(LINK_CODE_EXPIRE_MINUTES));
+    private final ExpiringCache<String, Integer> failedLinkAttempts = new ExpiringCache<>(
+            LINK_CODE_CACHE_SIZE, TimeUnit.MINUTES.toMillis(LINK_CODE_EXPIRE_MINUTES));
+    private final SecureRandom random = new SecureRandom();
 
     public VerificationManager(DiscordVerifier verifier) {
         this.verifier = verifier;
     }
 
+    public Optional<MessageEmbed> requestVerification(Member member, String nickname) {
+        return requestVerification(member, nickname, null);
+    }
+
+    public Optional<MessageEmbed> requestVerification(Member member, String nickname,
+                                                      InteractionHook hook) {
+        Config config = verifier.getConfig();
+
+        Optional<VerifiableUser> user =
+                verifier.getUserManager().retrieveByNickname(nickname);
+        Optional<Player> playerOptional = verifier.getServer().getPlayer(nickname);
+
+        if (playerOptional.isEmpty() || user.isEmpty())
+            return Optional.of(config.playerNotFound(nickname));
+        if (user.get().isVerified())
+            return Optional.of(config.playerAlreadyVerified(nickname));
+
+        Player player = playerOptional.get();
+        if (!startVerification(member, player)) return Optional.empty();
+        if (hook != null) interactionHooks.put(player, hook);
+        return Optional.of(config.verificationAccepted(nickname));
+    }
+
+    public synchronized String issueLinkCode(UUID uuid, String nickname) {
+        Optional<String> issuedCode = issuedCodes.get(uuid);
+        if (issuedCode.isPresent() && linkCodes.get(issuedCode.get()).isPresent()) return issuedCode.get();
+
+        String code;
+        do {
+            StringBuilder builder = new StringBuilder(LINK_CODE_LENGTH);
+            for (int i = 0; i < LINK_CODE_LENGTH; i++)
+                builder.append(LINK_CODE_ALPHABET.charAt(random.nextInt(LINK_CODE_ALPHABET.length())));
+            code = builder.toString();
+        } while (linkCodes.get(code).isPresent());
+        linkCodes.put(code, new PendingLink(uuid, nickname));
+        issuedCodes.put(uuid, code);
+        return code;
+    }
+
+    public MessageEmbed linkByCode(Member member, String code) {
+        Config config = verifier.getConfig();
+        VerifiableUserManager userManager = verifier.getUserManager();
+
+        // Only the code and the attempt counter are handled under the lock, the database work
+        // is done outside of it.
+        PendingLink pendingLink;
+        synchronized (this) {
+            int failedAttempts = failedLinkAttempts.get(member.getId()).orElse(0);
+            if (failedAttempts >= MAX_FAILED_LINK_ATTEMPTS) return config.linkCodeAttempts();
+
+            String normalizedCode = normalizeLinkCode(code);
+            Optional<PendingLink> pendingLinkOptional = linkCodes.get(normalizedCode);
+            if (pendingLinkOptional.isEmpty()) {
+                failedLinkAttempts.put(member.getId(), failedAttempts + 1);
+                return config.linkCodeInvalid();
+            }
+            failedLinkAttempts.invalidate(member.getId());
+
+            pendingLink = pendingLinkOptional.get();
+            linkCodes.invalidate(normalizedCode);
+            issuedCodes.invalidate(pendingLink.uuid());
+        }
+
+        UUID uuid = pendingLink.uuid();
+        verifier.getDataProvider().updateUserIdentity(uuid, pendingLink.nickname());
+        VerifiableUser user = userManager.load(uuid);
+        if (user.isVerified()) return config.playerAlreadyVerified(pendingLink.nickname());
+
+        userManager.updateUser(user.toBuilder()
+                .verified(true)
+                .discordId(member.getId())
+                .discordName(member.getUser().getAsTag())
+                .build());
+        verifier.getDiscordManager().addLink(member.getId(), uuid);
+        verifier.getSyncPipeline().request(uuid);
+        return config.verificationSuccess();
+    }
+
     public boolean startVerification(Member member, Player player) {
         Config config = verifier.getConfig();
 
@@ -64,6 +154,7 @@ public class VerificationManager {
             player.sendMessage(verifier.getConfig()
                     .verificationExpired(member.getUser().getAsTag()));
             verifyingPlayers.remove(player);
+            interactionHooks.remove(player);
         }
     }
 
@@ -79,194 +170,76 @@ public class VerificationManager {
 
         if (!accepted) {
             player.sendMessage(config.verificationDenied());
-            verifier.getDiscordManager().sendInVerification(
-                    config.verificationDenied(player.getUsername()));
+            respond(player, config.verificationDenied(player.getUsername()));
             verifyingPlayers.remove(player);
             return;
         }
 
         VerifiableUser user = verifier.getUserManager().create(player.getUniqueId());
         Member member = verifyingPlayers.get(player);
-        verifier.getDataProvider().updateUser(user.toBuilder()
+        verifier.getUserManager().updateUser(user.toBuilder()
                 .verified(true)
                 .discordId(member.getId())
                 .discordName(member.getUser().getAsTag())
                 .build());
+        verifier.getDiscordManager().addLink(member.getId(), player.getUniqueId());
 
-        this.updateGroups(player);
-        this.updateRoles(player);
-        this.updatePermissions(player);
-        this.updateNickname(player);
+        verifier.getSyncPipeline().request(player.getUniqueId());
 
         player.sendMessage(config.verifiedSuccessfully(verifyingPlayers.get(player).getUser().getAsTag()));
-        verifier.getDiscordManager().sendInVerification(config.verificationSuccess());
+        respond(player, config.verificationSuccess());
         verifyingPlayers.remove(player);
     }
 
-    private boolean hasPermission(User lpUser, Node node) { return this.hasPermission(lpUser, node.getKey()); }
-    private boolean hasPermission(User lpUser, String permission) {
-        return lpUser.getNodes().stream().anyMatch(node -> node.getKey().equals(permission) && node.getValue());
-    }
-
-    public void updateRoles(Player player) {
-        this.updateRoles(player, false);
-    }
-    public void updateRoles(Player player, boolean remove) { this.updateRoles(player.getUniqueId(), remove); }
-    public void updateRoles(UUID uuid) { this.updateRoles(uuid, false); }
-    public void updateRoles(UUID uuid, boolean remove) {
+    public void unlink(UUID uuid) {
         Config config = verifier.getConfig();
-        DiscordManager discord = verifier.getDiscordManager();
-
-        VerifiableUser user = verifier.getUserManager().create(uuid);
-        if (user.getDiscordId().isEmpty()) return;
-        Optional<Member> memberOptional = discord.getMemberById(user.getDiscordId().get());
-        if (memberOptional.isEmpty()) return;
-
-        Set<GroupRole> roleSet = config.groupsRolesSet();
-
-        if (remove) {
-            DiscordManager discordManager = verifier.getDiscordManager();
-            roleSet.forEach(groupRole -> discordManager.removeRole(
-                    memberOptional.get(), groupRole.getRole()));
-        } else {
-            this.verifier.getLuckPerms().getUserManager().loadUser(uuid).thenAccept(lpUser -> {
-                Member member = memberOptional.get();
-                boolean roleAssigned = false;
-                for (GroupRole groupRole : roleSet) {
-                    Role role = groupRole.getRole();
-                    boolean hasNode = this.hasPermission(lpUser, "group." + groupRole.getGroupName());
-
-                    if (hasNode && (!roleAssigned || !config.oneRoleLimit())) {
-                        discord.addRole(member, role);
-                        roleAssigned = true;
-                    } else
-                        discord.removeRole(member, role);
-                }
-            });
-        }
-    }
-
-    public void updateGroups(Player player) {
-        updateGroups(player, false);
-    }
-    public void updateGroups(Player player, boolean remove) { updateGroups(player.getUniqueId(), remove); }
-    public void updateGroups(UUID uuid) { updateGroups(uuid, false); }
-    public void updateGroups(UUID uuid, boolean remove) {
-        Config config = verifier.getConfig();
-        DiscordManager discord = verifier.getDiscordManager();
-
-        VerifiableUser user = verifier.getUserManager().create(uuid);
-        if (user.getDiscordId().isEmpty()) return;
-        Optional<Member> memberOptional = discord.getMemberById(user.getDiscordId().get());
-        if (memberOptional.isEmpty()) return;
-
-        Member member = memberOptional.get();
-        List<Role> roles = member.getRoles();
-        Set<RoleGroup> groupSet = config.rolesGroupsSet();
-
-        UserManager userManager = this.verifier.getLuckPerms().getUserManager();
-
-        userManager.loadUser(uuid).thenAccept(lpUser -> {
-            boolean modified = false;
-
-            for (RoleGroup roleGroup : groupSet) {
-                Node pNode = Node.builder("group." + roleGroup.getGroupName()).build();
-                boolean hasPerm = this.hasPermission(lpUser, pNode);
-                boolean hasRole = roles.contains(roleGroup.getRole());
-
-                if (hasPerm && (remove || !hasRole)) {
-                    modified = true;
-                    lpUser.data().remove(pNode);
-                    if (roleGroup.usesTrack()) {
-                        String defaultGroup = config.trackDefaultGroup(roleGroup.getTrackName());
-                        if (defaultGroup != null) lpUser.data().add(Node.builder("group." + defaultGroup).build());
-                    }
-                } else if (!remove && (!hasPerm && hasRole)) {
-                    modified = true;
-
-                    if (roleGroup.usesTrack()) {
-                        Track track = roleGroup.getTrack(this.verifier.getLuckPerms());
-
-                        if (track == null) {
-                            LogUtils.error("Track {} not found, still adding group {}, without removing existing groups in track.", roleGroup.getTrackName(), roleGroup.getGroupName());
-                            continue;
-                        }
-
-                        List<String> trackGroups = track.getGroups();
-                        for (String trackGroup : trackGroups) {
-                            Node node = Node.builder("group." + trackGroup).build();
-                            if (!this.hasPermission(lpUser, node)) continue;
-                            lpUser.data().remove(node);
-                        }
-                    }
-
-                    lpUser.data().add(pNode);
-                }
-            }
-
-            if (modified)
-                userManager.saveUser(lpUser);
-        });
-    }
-
-    public void updatePermissions(Player player) {
-        updatePermissions(player, false);
-    }
-    public void updatePermissions(Player player, boolean remove) { updatePermissions(player.getUniqueId(), remove); }
-    public void updatePermissions(UUID uuid) { updatePermissions(uuid, false); }
-    public void updatePermissions(UUID uuid, boolean remove) {
-        Config config = verifier.getConfig();
-        List<String> perms = config.verificationPermissions();
-
-        UserManager userManager = this.verifier.getLuckPerms().getUserManager();
-        VerifiableUser user = verifier.getUserManager().create(uuid);
+        VerifiableUserManager userManager = verifier.getUserManager();
+
+        VerifiableUser user = userManager.create(uuid);
+        verifier.getSyncPipeline().sync(user, true, false);
+        userManager.updateUser(user.toBuilder()
+                .discordId(null)
+                .discordName(null)
+                .verified(false)
+                .build());
+        verifier.getDiscordManager().removeLink(uuid);
 
-        boolean verified = user.isVerified();
-        boolean shouldRemove = remove || !verified;
+        boolean kickUnlink = config.kickOnUnlink();
 
-        userManager.loadUser(uuid).thenAccept(lpUser -> {
-            boolean modified = false;
+        String sendServer = config.sendToServerOnUnlink();
+        boolean sendToServer = !sendServer.isBlank();
 
-            for (String perm : perms) {
-                boolean hasPerm = this.hasPermission(lpUser, perm);
-                if (shouldRemove != hasPerm) continue;
+        if (!sendToServer && !kickUnlink) return;
 
-                modified = true;
+        ProxyServer proxy = verifier.getServer();
+        Optional<Player> optPly = proxy.getPlayer(uuid);
+        if (optPly.isEmpty()) return;
 
-                if (shouldRemove) lpUser.data().remove(Node.builder(perm).build());
-                else lpUser.data().add(Node.builder(perm).build());
+        Player ply = optPly.get();
+        if (sendToServer) {
+            var optServer = proxy.getServer(sendServer);
+            if (optServer.isPresent()) ply.createConnectionRequest(optServer.get()).connect();
+            else {
+                LogUtils.error("No server found by the name " + sendServer);
+                if (kickUnlink) ply.disconnect(config.unlinkKicked());
             }
-
-            if (modified)
-                userManager.saveUser(lpUser);
-        });
+        } else ply.disconnect(config.unlinkKicked());
     }
 
-    public void updateNickname(Player player) { updateNickname(player, false); }
-    public void updateNickname(Player player, boolean login) {
-        Config config = verifier.getConfig();
-
-        if (!config.nicknameSyncEnabled() || (login && !config.forceNicknames())) return;
-
-        VerifiableUser user = verifier.getUserManager().create(player.getUniqueId());
-        if (!user.isVerified() || user.getDiscordId().isEmpty()) return;
-
-        DiscordManager discordManager = verifier.getDiscordManager();
-        Optional<Member> memberOptional =
-                discordManager.getMemberById(user.getDiscordId().get());
-        if (memberOptional.isEmpty()) return;
-
-        Member member = memberOptional.get();
-
-        boolean discordToMinecraft = config.nicknameSyncDiscordToMinecraft();
-
-        if (discordToMinecraft) {
-          // todo; not implemented (probably requires some other plugin, maybe later)
-        } else discordManager.setNickname(member, player.getUsername());
+    private void respond(Player player, MessageEmbed embed) {
+        InteractionHook hook = interactionHooks.remove(player);
+        if (hook != null && !hook.isExpired()) {
+            hook.sendMessageEmbeds(embed).setEphemeral(true).queue();
+            return;
+        }
+        Member member = verifyingPlayers.get(player);
+        if (member != null) verifier.getDiscordManager().sendInVerification(member.getGuild(), embed);
+    }
 
-//        if (!member.getPermissions().contains(Permission.NICKNAME_CHANGE)) {
-//            discordManager.setNickname(memberOptional.get(), player.getUsername());
-//        }
+    private static String normalizeLinkCode(String code) {
+        return code.replace("-", "").replace(" ", "").toUpperCase(Locale.ROOT);
     }
 
-}
\ No newline at end of file
+    private record PendingLink(UUID uuid, String nickname) {}
+
+}
@@ -25,10 +25,12 @@ public class GroupRole implements Comparable<GroupRole> {
 
     private final String groupName;
     private final Role role;
+    private final int position;
 
     public GroupRole(String groupName, Role role) {
         this.groupName = groupName;
         this.role = role;
+        this.position = role.getPosition();
     }
 
     public String getGroupName() {
@@ -39,9 +41,13 @@ public class GroupRole implements Comparable<GroupRole> {
         return role;
     }
 
+    public int getPosition() {
+        return position;
+    }
+
     @Override
     public int compareTo(@NotNull GroupRole r) {
-        return Integer.compare(r.getRole().getPosition(), this.getRole().getPosition());
+        return Integer.compare(r.getPosition(), this.getPosition());
     }
 
 }
@@ -21,49 +21,79 @@ package xyz.yawek.discordverifier.role;
 import net.dv8tion.jda.api.entities.Role;
 import net.luckperms.api.LuckPerms;
 import net.luckperms.api.track.Track;
-import net.luckperms.api.track.TrackManager;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 public class RoleGroup implements Comparable<RoleGroup> {
 
     private final String trackName;
     private final String groupName;
+    private final String roleId;
     private final Role role;
+    private final int position;
+    private final Track track;
+    private final List<String> trackGroups;
+    private final String defaultGroup;
 
-    public RoleGroup(String groupOption, Role role) {
+    public RoleGroup(String groupOption, String roleId, Role role,
+                     LuckPerms luckPerms, Map<String, String> trackDefaultGroups) {
         String[] optsArr = groupOption.split(":");
 
         boolean usesTracks = optsArr.length > 1;
         this.trackName = usesTracks ? optsArr[0] : null;
         this.groupName = (usesTracks ? optsArr[1] : groupOption).toLowerCase();
 
+        this.roleId = roleId;
         this.role = role;
+        this.position = role != null ? role.getPosition() : -1;
+        this.track = usesTracks ? luckPerms.getTrackManager().getTrack(trackName) : null;
+        this.trackGroups = track != null ? List.copyOf(track.getGroups()) : Collections.emptyList();
+        this.defaultGroup = usesTracks ? trackDefaultGroups.get(trackName) : null;
     }
 
     public boolean usesTrack() {
         return this.trackName != null;
     }
-    public Track getTrack(LuckPerms lp) {
-        if (!this.usesTrack()) return null;
-        TrackManager trackManager = lp.getTrackManager();
-        return trackManager.getTrack(this.trackName);
+
+    public Track getTrack() {
+        return track;
     }
+
+    public List<String> getTrackGroups() {
+        return trackGroups;
+    }
+
     public String getTrackName() {
         if (!this.usesTrack()) return null;
         return trackName;
     }
 
+    public String getDefaultGroup() {
+        return defaultGroup;
+    }
+
     public String getGroupName() {
         return groupName;
     }
 
+    public String getRoleId() {
+        return roleId;
+    }
+
     public Role getRole() {
         return role;
     }
 
+    public int getPosition() {
+        return position;
+    }
+
     @Override
     public int compareTo(@NotNull RoleGroup r) {
-        return Integer.compare(r.getRole().getPosition(), this.getRole().getPosition());
+        return Integer.compare(r.getPosition(), this.getPosition());
     }
 
 }
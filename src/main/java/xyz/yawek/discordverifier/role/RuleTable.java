@@ -0,0 +1,162 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.role;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+import net.luckperms.api.LuckPerms;
+import org.jetbrains.annotations.Nullable;
+import xyz.yawek.discordverifier.config.GuildSettings;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RuleTable {
+
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    public static final RuleTable EMPTY = new RuleTable(List.of(), List.of(), Set.of());
+
+    private final long version;
+    private final List<GroupRole> groupRoles;
+    private final List<RoleGroup> roleGroups;
+    private final Set<String> unmanageableRoleIds;
+
+    private RuleTable(List<GroupRole> groupRoles, List<RoleGroup> roleGroups,
+                      Set<String> unmanageableRoleIds) {
+        this.version = VERSIONS.incrementAndGet();
+        this.groupRoles = groupRoles;
+        this.roleGroups = roleGroups;
+        this.unmanageableRoleIds = unmanageableRoleIds;
+    }
+
+    public static RuleTable compile(GuildSettings settings, @Nullable Guild guild,
+                                    LuckPerms luckPerms, Map<String, String> trackDefaultGroups) {
+        List<GroupRole> groupRoles = new ArrayList<>();
+        Set<String> unmanageableRoleIds = new HashSet<>();
+        if (guild != null) {
+            Member selfMember = guild.getSelfMember();
+            settings.getGroupsRoles().forEach((groupName, roleId) -> {
+                Role role = guild.getRoleById(roleId);
+                if (role == null) return;
+                if (role.isManaged() || !selfMember.canInteract(role)) {
+                    unmanageableRoleIds.add(roleId);
+                    return;
+                }
+                groupRoles.add(new GroupRole(groupName, role));
+            });
+        }
+
+        List<RoleGroup> roleGroups = new ArrayList<>();
+        settings.getRolesGroups().forEach((roleId, groupOption) -> {
+            Role role = guild != null ? guild.getRoleById(roleId) : null;
+            if (guild != null && role == null) return;
+            roleGroups.add(new RoleGroup(groupOption, roleId, role, luckPerms, trackDefaultGroups));
+        });
+
+        Collections.sort(groupRoles);
+        Collections.sort(roleGroups);
+        return new RuleTable(List.copyOf(groupRoles), List.copyOf(roleGroups),
+                Set.copyOf(unmanageableRoleIds));
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<GroupRole> getGroupRoles() {
+        return groupRoles;
+    }
+
+    public List<RoleGroup> getRoleGroups() {
+        return roleGroups;
+    }
+
+    public Set<String> getUnmanageableRoleIds() {
+        return unmanageableRoleIds;
+    }
+
+    public Set<String> changedRoles(RuleTable previous) {
+        Set<String> changedRoles = new HashSet<>();
+        Map<String, String> groupRoleSignatures = groupRoleSignatures();
+        Map<String, String> previousGroupRoleSignatures = previous.groupRoleSignatures();
+        changedKeys(groupRoleSignatures, previousGroupRoleSignatures).forEach(groupName -> {
+            roleId(groupRoleSignatures.get(groupName)).ifPresent(changedRoles::add);
+            roleId(previousGroupRoleSignatures.get(groupName)).ifPresent(changedRoles::add);
+        });
+        changedRoles.addAll(changedKeys(roleGroupSignatures(), previous.roleGroupSignatures()));
+        return changedRoles;
+    }
+
+    public Set<String> changedGroups(RuleTable previous) {
+        Set<String> changedGroups = new HashSet<>(
+                changedKeys(groupRoleSignatures(), previous.groupRoleSignatures()));
+        Set<String> changedRoles = changedKeys(roleGroupSignatures(), previous.roleGroupSignatures());
+        for (RuleTable table : List.of(this, previous)) {
+            table.roleGroups.stream()
+                    .filter(roleGroup -> changedRoles.contains(roleGroup.getRoleId()))
+                    .forEach(roleGroup -> changedGroups.add(roleGroup.getGroupName()));
+        }
+        return changedGroups;
+    }
+
+    private Map<String, String> groupRoleSignatures() {
+        Map<String, String> signatures = new HashMap<>();
+        for (int i = 0; i < groupRoles.size(); i++) {
+            GroupRole groupRole = groupRoles.get(i);
+            signatures.put(groupRole.getGroupName(), groupRole.getRole().getId() + ":" + i);
+        }
+        return signatures;
+    }
+
+    private Map<String, String> roleGroupSignatures() {
+        Map<String, String> signatures = new HashMap<>();
+        roleGroups.forEach(roleGroup -> signatures.put(roleGroup.getRoleId(),
+                roleGroup.getGroupName() + ":" + roleGroup.getTrackName() + ":"
+                        + roleGroup.getTrackGroups() + ":" + roleGroup.getDefaultGroup()));
+        return signatures;
+    }
+
+    private static Set<String> changedKeys(Map<String, String> signatures,
+                                           Map<String, String> previousSignatures) {
+        Set<String> changedKeys = new HashSet<>();
+        signatures.forEach((key, signature) -> {
+            if (!signature.equals(previousSignatures.get(key))) changedKeys.add(key);
+        });
+        previousSignatures.keySet().stream()
+                .filter(key -> !signatures.containsKey(key))
+                .forEach(changedKeys::add);
+        return changedKeys;
+    }
+
+    private static Optional<String> roleId(String signature) {
+        if (signature == null) return Optional.empty();
+        return Optional.of(signature.substring(0, signature.indexOf(':')));
+    }
+
+    public Set<String> getMissingTracks() {
+        Set<String> missingTracks = new HashSet<>();
+        roleGroups.stream()
+                .filter(roleGroup -> roleGroup.usesTrack() && roleGroup.getTrack() == null)
+                .forEach(roleGroup -> missingTracks.add(roleGroup.getTrackName()));
+        return missingTracks;
+    }
+
+}
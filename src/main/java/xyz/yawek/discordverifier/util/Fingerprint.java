@@ -0,0 +1,58 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.util;
+
+public class Fingerprint {
+
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private long hash = OFFSET_BASIS;
+
+    public Fingerprint add(String value) {
+        if (value == null) return add(-1);
+        for (int i = 0; i < value.length(); i++) {
+            mix(value.charAt(i));
+        }
+        mix(0xffff);
+        return this;
+    }
+
+    public Fingerprint add(long value) {
+        for (int i = 0; i < 8; i++) {
+            mix((int) (value >>> (i * 8)) & 0xff);
+        }
+        return this;
+    }
+
+    public Fingerprint add(boolean value) {
+        mix(value ? 1 : 0);
+        return this;
+    }
+
+    public long get() {
+        return hash;
+    }
+
+    private void mix(int value) {
+        hash ^= value;
+        hash *= PRIME;
+    }
+
+}
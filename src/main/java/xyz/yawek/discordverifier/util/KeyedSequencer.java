@@ -0,0 +1,59 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.util;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+public class KeyedSequencer<K> {
+
+    private final StripedExecutor executor;
+    private final Map<K, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+
+    public KeyedSequencer(String name, int stripeCount) {
+        this.executor = new StripedExecutor(name, stripeCount, Integer.MAX_VALUE);
+    }
+
+    public CompletableFuture<Void> submit(K key, Supplier<CompletableFuture<Void>> task) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        CompletableFuture<Void> tail = tails.compute(key, (ignored, previous) ->
+                (previous != null ? previous : CompletableFuture.<Void>completedFuture(null))
+                        .thenComposeAsync(value -> task.get(), runnable -> {
+                            if (!executor.execute(key, runnable)) runnable.run();
+                        })
+                        .handle((value, throwable) -> {
+                            if (throwable != null) result.completeExceptionally(throwable);
+                            else result.complete(null);
+                            return null;
+                        }));
+        tail.thenRun(() -> tails.remove(key, tail));
+        return result;
+    }
+
+    public int size() {
+        return tails.size();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.util;
+
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.node.Node;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+public class NodeKeyIndex {
+
+    private final User user;
+    private final Map<String, Integer> grantedKeys = new HashMap<>();
+
+    public NodeKeyIndex(User user) {
+        this.user = user;
+        for (Node node : user.getNodes()) {
+            if (node.getValue()) grantedKeys.merge(node.getKey(), 1, Integer::sum);
+        }
+    }
+
+    public boolean has(String key) {
+        return grantedKeys.containsKey(key);
+    }
+
+    public Set<String> keys() {
+        return Collections.unmodifiableSet(grantedKeys.keySet());
+    }
+
+    public boolean add(Node node) {
+        boolean added = user.data().add(node).wasSuccessful();
+        if (added && node.getValue()) grantedKeys.merge(node.getKey(), 1, Integer::sum);
+        return added;
+    }
+
+    public boolean remove(Node node) {
+        boolean removed = user.data().remove(node).wasSuccessful();
+        if (removed && node.getValue())
+            grantedKeys.computeIfPresent(node.getKey(), (key, count) -> count > 1 ? count - 1 : null);
+        return removed;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+}
@@ -0,0 +1,216 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier;
+
+import com.velocitypowered.api.command.CommandSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import xyz.yawek.discordverifier.harness.EventReplay;
+import xyz.yawek.discordverifier.harness.FakeDiscordServer;
+import xyz.yawek.discordverifier.harness.FakeGuild;
+import xyz.yawek.discordverifier.harness.PluginHarness;
+import xyz.yawek.discordverifier.manager.DiscordManager;
+import xyz.yawek.discordverifier.manager.GuildContext;
+import xyz.yawek.discordverifier.manager.Reconciler;
+import xyz.yawek.discordverifier.manager.RoleIndex;
+import xyz.yawek.discordverifier.util.Statistics;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class DiscordLoadTest {
+
+    private static final long GUILD_ID = 400000000000000001L;
+    private static final long CHANNEL_ID = 400000000000000002L;
+    private static final long ROLE_ID = 400000000000000003L;
+    private static final long MEMBER_ID = 500000000000000000L;
+    private static final long UNLINKED_MEMBER_ID = 600000000000000000L;
+    private static final long CODE_MEMBER_ID = 700000000000000000L;
+    private static final int LINKED_MEMBERS = 100;
+    private static final long STORED_MEMBER_ID = MEMBER_ID + LINKED_MEMBERS + 1;
+    private static final String MESSAGES_ROUTE = "POST /channels/{id}/messages";
+    private static final String COMMANDS_ROUTE = "PUT /applications/{id}/guilds/{id}/commands";
+
+    @TempDir
+    static Path dataDirectory;
+    private static FakeGuild guild;
+    private static FakeDiscordServer server;
+    private static PluginHarness harness;
+
+    @BeforeAll
+    static void start() throws Exception {
+        guild = new FakeGuild(GUILD_ID, CHANNEL_ID).role(ROLE_ID, "Member");
+        for (int i = 1; i <= LINKED_MEMBERS; i++) guild.member(MEMBER_ID + i, "member" + i);
+        server = new FakeDiscordServer(guild);
+        harness = PluginHarness.start(server, guild, dataDirectory);
+        guild.getMembers().forEach(harness::link);
+        guild.member(STORED_MEMBER_ID, "stored");
+        guild.member(CODE_MEMBER_ID, "coder");
+
+        GuildContext context = harness.getVerifier().getDiscordManager().getGuild(GUILD_ID).orElseThrow();
+        assertTrue(PluginHarness.await(() -> context.getRoleIndex().size() == LINKED_MEMBERS,
+                10, TimeUnit.SECONDS), "Linked members were not indexed.");
+    }
+
+    @AfterAll
+    static void stop() throws Exception {
+        if (harness != null) harness.close();
+        if (server != null) server.close();
+    }
+
+    @Test
+    void connectsAndRegistersCommands() {
+        DiscordManager discord = harness.getVerifier().getDiscordManager();
+        Statistics statistics = harness.getVerifier().getStatistics();
+
+        assertTrue(discord.isConnected());
+        assertTrue(discord.isIndexed());
+        assertEquals(1, server.getRouteCount(COMMANDS_ROUTE));
+        assertEquals(1, statistics.get("rest." + COMMANDS_ROUTE));
+    }
+
+    @Test
+    void answersVerificationMessages() throws InterruptedException {
+        Statistics statistics = harness.getVerifier().getStatistics();
+        EventReplay replay = new EventReplay("messages", 500, 250);
+        Map<String, Long> routesBefore = server.getRouteCounts();
+        long repliesBefore = server.getRouteCount(MESSAGES_ROUTE);
+        long countedBefore = statistics.get("rest." + MESSAGES_ROUTE);
+
+        replay.replay(i -> server.sendMessage(GUILD_ID, UNLINKED_MEMBER_ID + i, "user" + i,
+                "!mclink player" + i));
+        assertTrue(server.awaitRouteCount(MESSAGES_ROUTE, repliesBefore + replay.getEvents(),
+                30, TimeUnit.SECONDS), "Not every verification message was answered.");
+        double throughput = replay.report(routesBefore, server.getRouteCounts());
+
+        assertEquals(replay.getEvents(), server.getRouteCount(MESSAGES_ROUTE) - repliesBefore);
+        assertEquals(replay.getEvents(), statistics.get("rest." + MESSAGES_ROUTE) - countedBefore);
+        assertTrue(throughput > 0);
+    }
+
+    @Test
+    void linksAccountsByCode() throws InterruptedException {
+        DiscordVerifier verifier = harness.getVerifier();
+        UUID uuid = UUID.randomUUID();
+        String code = verifier.getVerificationManager().issueLinkCode(uuid, "coded");
+        String memberId = Long.toUnsignedString(CODE_MEMBER_ID);
+        long repliesBefore = server.getRouteCount(MESSAGES_ROUTE);
+
+        server.sendMessage(GUILD_ID, CODE_MEMBER_ID, "coder", "!mclink code:AAAAAAAAAA");
+        assertTrue(server.awaitRouteCount(MESSAGES_ROUTE, repliesBefore + 1, 10, TimeUnit.SECONDS),
+                "The invalid code was not answered.");
+        assertFalse(verifier.getLinkIndex().isLinked(memberId));
+
+        server.sendMessage(GUILD_ID, CODE_MEMBER_ID, "coder", "!mclink code:" + code.toLowerCase());
+        assertTrue(PluginHarness.await(() -> verifier.getLinkIndex().isLinked(memberId),
+                10, TimeUnit.SECONDS), "The account was not linked by its code.");
+        assertEquals(uuid, verifier.getLinkIndex().getUUID(memberId).orElseThrow());
+        GuildContext context = verifier.getDiscordManager().getGuild(GUILD_ID).orElseThrow();
+        assertTrue(PluginHarness.await(() -> context.getRoleIndex().contains(memberId),
+                10, TimeUnit.SECONDS), "Member linked by code was not indexed.");
+    }
+
+    @Test
+    void synchronizesRoleUpdates() throws InterruptedException {
+        DiscordVerifier verifier = harness.getVerifier();
+        Statistics statistics = verifier.getStatistics();
+        GuildContext context = verifier.getDiscordManager().getGuild(GUILD_ID).orElseThrow();
+        EventReplay replay = new EventReplay("roles", 1000, 500);
+        Map<String, Long> routesBefore = server.getRouteCounts();
+        long syncsBefore = statistics.get("sync.applied") + statistics.get("sync.skipped");
+
+        replay.replay(i -> {
+            long memberId = MEMBER_ID + 1 + i % LINKED_MEMBERS;
+            boolean add = !guild.getMember(memberId).getRoleIds().contains(ROLE_ID);
+            server.updateRoles(GUILD_ID, memberId, ROLE_ID, add);
+        });
+        assertTrue(PluginHarness.await(() -> holders().equals(context.getRoleIndex().getHolders(
+                Long.toUnsignedString(ROLE_ID))), 30, TimeUnit.SECONDS), "Role index is out of date.");
+        assertTrue(PluginHarness.await(() -> verifier.getSyncPipeline().getPendingRequests() == 0
+                && verifier.getSyncPipeline().getSequencedUsers() == 0, 30, TimeUnit.SECONDS),
+                "Synchronizations did not finish.");
+        replay.report(routesBefore, server.getRouteCounts());
+
+        long syncs = statistics.get("sync.applied") + statistics.get("sync.skipped") - syncsBefore;
+        assertTrue(syncs >= Math.min(replay.getEvents(), LINKED_MEMBERS),
+                "Only " + syncs + " synchronizations ran.");
+    }
+
+    @Test
+    void keepsIndexesWhileRebuilding() throws InterruptedException {
+        GuildContext context = harness.getVerifier().getDiscordManager().getGuild(GUILD_ID).orElseThrow();
+        RoleIndex previousIndex = context.getRoleIndex();
+
+        int linkedMembers = harness.getVerifier().getLinkIndex().size();
+
+        context.rebuildIndexes();
+        assertTrue(context.isIndexed());
+        assertEquals(linkedMembers, context.getRoleIndex().size());
+        assertTrue(PluginHarness.await(() -> context.getRoleIndex() != previousIndex,
+                10, TimeUnit.SECONDS), "Role index was not rebuilt.");
+        assertEquals(linkedMembers, context.getRoleIndex().size());
+    }
+
+    @Test
+    void reloadsLinksWithoutRebuildingIndexes() throws InterruptedException {
+        DiscordVerifier verifier = harness.getVerifier();
+        GuildContext context = verifier.getDiscordManager().getGuild(GUILD_ID).orElseThrow();
+        RoleIndex previousIndex = context.getRoleIndex();
+        long banRequests = server.getRouteCount("GET /guilds/{id}/bans");
+        String storedMemberId = Long.toUnsignedString(STORED_MEMBER_ID);
+        harness.store(guild.getMember(STORED_MEMBER_ID));
+
+        verifier.reload();
+        assertTrue(context.isIndexed());
+        assertTrue(PluginHarness.await(() -> context.getRoleIndex().contains(storedMemberId),
+                10, TimeUnit.SECONDS), "Member linked in the database was not indexed.");
+        assertSame(previousIndex, context.getRoleIndex());
+        assertEquals(banRequests, server.getRouteCount("GET /guilds/{id}/bans"));
+    }
+
+    @Test
+    void reconcilesEveryLinkedPlayer() throws InterruptedException {
+        Reconciler reconciler = harness.getVerifier().getReconciler();
+
+        assertTrue(reconciler.start(mock(CommandSource.class)));
+        assertTrue(PluginHarness.await(() -> !reconciler.isRunning(), 30, TimeUnit.SECONDS),
+                "Reconciliation did not finish.");
+        assertEquals(reconciler.getTotal(), reconciler.getCompleted());
+        assertFalse(Files.exists(dataDirectory.resolve("reconcile.checkpoint")));
+    }
+
+    private static Set<String> holders() {
+        Set<String> holders = new HashSet<>();
+        guild.getMembers().stream()
+                .filter(member -> member.getRoleIds().contains(ROLE_ID))
+                .forEach(member -> holders.add(Long.toUnsignedString(member.getId())));
+        return holders;
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.harness;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntConsumer;
+
+/**
+ * Replays events at a fixed rate and reports how fast they were handled.
+ * The amount and rate are read from the {@code harness.<name>.events} and
+ * {@code harness.<name>.rate} system properties, a rate of 0 replays the events at once.
+ */
+public class EventReplay {
+
+    private final String name;
+    private final int events;
+    private final double eventsPerSecond;
+    private long startTime;
+
+    public EventReplay(String name, int defaultEvents, double defaultEventsPerSecond) {
+        this.name = name;
+        this.events = Integer.getInteger("harness." + name + ".events", defaultEvents);
+        this.eventsPerSecond = Double.parseDouble(System.getProperty("harness." + name + ".rate",
+                String.valueOf(defaultEventsPerSecond)));
+    }
+
+    public int getEvents() {
+        return events;
+    }
+
+    public void replay(IntConsumer event) {
+        startTime = System.nanoTime();
+        for (int i = 0; i < events; i++) {
+            if (eventsPerSecond > 0) {
+                long wait = startTime + (long) (i * 1_000_000_000L / eventsPerSecond) - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+            }
+            event.accept(i);
+        }
+    }
+
+    public double report(Map<String, Long> routesBefore, Map<String, Long> routesAfter) {
+        double seconds = (System.nanoTime() - startTime) / 1_000_000_000D;
+        double throughput = events / seconds;
+        System.out.printf(Locale.ROOT, "[%s] %d events offered at %s, handled at %.1f/s in %.3f s%n",
+                name, events, eventsPerSecond > 0 ? eventsPerSecond + "/s" : "once", throughput, seconds);
+
+        Set<String> routes = new HashSet<>(routesAfter.keySet());
+        routes.stream().sorted().forEach(route -> {
+            long count = routesAfter.get(route) - routesBefore.getOrDefault(route, 0L);
+            if (count > 0) System.out.printf(Locale.ROOT, "[%s]   %s: %d%n", name, route, count);
+        });
+        return throughput;
+    }
+
+}
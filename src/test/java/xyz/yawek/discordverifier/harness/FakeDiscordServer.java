@@ -0,0 +1,559 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.harness;
+
+import net.dv8tion.jda.api.utils.data.DataArray;
+import net.dv8tion.jda.api.utils.data.DataObject;
+import xyz.yawek.discordverifier.manager.RestCallCounter;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+/**
+ * Minimal stand-in for the Discord REST API and gateway, serving both over plain HTTP
+ * on the loopback interface, so that a real JDA instance can run without network access.
+ * Every REST request is counted by its normalized route.
+ */
+public class FakeDiscordServer implements AutoCloseable {
+
+    public static final long BOT_ID = 100000000000000001L;
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final String TIMESTAMP = "2022-01-01T00:00:00.000000+00:00";
+
+    private final Map<Long, FakeGuild> guilds = new LinkedHashMap<>();
+    private final ServerSocket serverSocket;
+    private final ExecutorService connectionExecutor;
+    private final Map<String, LongAdder> routes = new ConcurrentHashMap<>();
+    private final AtomicLong snowflakes = new AtomicLong(900000000000000000L);
+    private volatile Gateway gateway;
+
+    public FakeDiscordServer(FakeGuild... guilds) throws IOException {
+        for (FakeGuild guild : guilds) this.guilds.put(guild.getId(), guild);
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        AtomicInteger threadCount = new AtomicInteger();
+        this.connectionExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "Fake Discord Connection #" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        connectionExecutor.execute(this::accept);
+    }
+
+    public String getApiUrl() {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort() + "/api/v10/";
+    }
+
+    public String getGatewayUrl() {
+        return "ws://127.0.0.1:" + serverSocket.getLocalPort();
+    }
+
+    public FakeGuild getGuild(long guildId) {
+        return guilds.get(guildId);
+    }
+
+    public long nextId() {
+        return snowflakes.incrementAndGet();
+    }
+
+    public long getRouteCount(String route) {
+        LongAdder counter = routes.get(route);
+        return counter != null ? counter.sum() : 0;
+    }
+
+    public Map<String, Long> getRouteCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        routes.forEach((route, counter) -> counts.put(route, counter.sum()));
+        return counts;
+    }
+
+    public boolean awaitRouteCount(String route, long count, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (getRouteCount(route) < count) {
+            if (System.nanoTime() > deadline) return false;
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    public void sendMessage(long guildId, long memberId, String name, String content) {
+        FakeGuild guild = guilds.get(guildId);
+        DataObject member = DataObject.empty()
+                .put("roles", DataArray.empty())
+                .put("joined_at", TIMESTAMP)
+                .putNull("nick")
+                .put("deaf", false)
+                .put("mute", false)
+                .put("pending", false)
+                .put("flags", 0);
+        dispatch("MESSAGE_CREATE", message(nextId(), guild.getChannelId(), user(memberId, name, false), content)
+                .put("guild_id", Long.toUnsignedString(guildId))
+                .put("member", member));
+    }
+
+    public void updateRoles(long guildId, long memberId, long roleId, boolean add) {
+        FakeGuild.FakeMember member = guilds.get(guildId).getMember(memberId);
+        if (add) member.addRole(roleId);
+        else member.removeRole(roleId);
+        dispatch("GUILD_MEMBER_UPDATE", member(member).put("guild_id", Long.toUnsignedString(guildId)));
+    }
+
+    public void dispatch(String type, DataObject data) {
+        Gateway currentGateway = gateway;
+        if (currentGateway == null) throw new IllegalStateException("No gateway session is open.");
+        currentGateway.dispatch(type, data);
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connectionExecutor.shutdownNow();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connectionExecutor.execute(() -> serve(socket));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            HttpRequest request;
+            while ((request = HttpRequest.read(in)) != null) {
+                if ("websocket".equalsIgnoreCase(request.headers.get("upgrade"))) {
+                    Gateway session = new Gateway(in, out, request.target.contains("compress=zlib-stream"));
+                    session.open(request.headers.get("sec-websocket-key"));
+                    return;
+                }
+                respond(request, out);
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void respond(HttpRequest request, OutputStream out) throws IOException {
+        String path = request.target.split("\\?", 2)[0];
+        String route = request.method + " " + RestCallCounter.route(path);
+        routes.computeIfAbsent(route, key -> new LongAdder()).increment();
+
+        String[] segments = path.split("/");
+        switch (route) {
+            case "GET /gateway", "GET /gateway/bot" -> write(out, 200, DataObject.empty()
+                    .put("url", getGatewayUrl())
+                    .put("shards", 1)
+                    .put("session_start_limit", DataObject.empty()
+                            .put("total", 1000)
+                            .put("remaining", 1000)
+                            .put("reset_after", 0)
+                            .put("max_concurrency", 1)).toString());
+            case "GET /users/@me" -> write(out, 200, user(BOT_ID, "Verifier", true).toString());
+            case "GET /applications/@me", "GET /oauth2/applications/@me" -> write(out, 200,
+                    DataObject.empty()
+                            .put("id", Long.toUnsignedString(BOT_ID))
+                            .put("name", "Verifier")
+                            .putNull("icon")
+                            .put("description", "")
+                            .put("bot_public", false)
+                            .put("bot_require_code_grant", false)
+                            .put("flags", 0).toString());
+            case "PUT /applications/{id}/guilds/{id}/commands", "GET /guilds/{id}/bans" ->
+                    write(out, 200, "[]");
+            case "POST /channels/{id}/messages" -> {
+                DataObject body = DataObject.fromJson(request.body);
+                DataArray embeds = DataArray.empty();
+                body.optArray("embeds").ifPresent(sentEmbeds -> sentEmbeds.stream(DataArray::getObject)
+                        .forEach(embed -> embeds.add(embed.put("type", "rich"))));
+                write(out, 200, message(nextId(), Long.parseUnsignedLong(segments[4]),
+                        user(BOT_ID, "Verifier", true), body.getString("content", ""))
+                        .put("embeds", embeds).toString());
+            }
+            case "GET /guilds/{id}/members/{id}" -> {
+                FakeGuild guild = guilds.get(Long.parseUnsignedLong(segments[4]));
+                FakeGuild.FakeMember member = guild != null
+                        ? guild.getMember(Long.parseUnsignedLong(segments[6])) : null;
+                if (member != null) write(out, 200, member(member).toString());
+                else write(out, 404, "{\"message\":\"Unknown Member\",\"code\":10007}");
+            }
+            default -> {
+                if (request.method.equals("GET")) write(out, 404, "{\"message\":\"404: Not Found\",\"code\":0}");
+                else write(out, 204, null);
+            }
+        }
+    }
+
+    private static void write(OutputStream out, int status, String body) throws IOException {
+        byte[] bytes = body != null ? body.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        String reason = switch (status) {
+            case 200 -> "OK";
+            case 204 -> "No Content";
+            default -> "Not Found";
+        };
+        StringBuilder head = new StringBuilder("HTTP/1.1 ").append(status).append(' ').append(reason)
+                .append("\r\nContent-Length: ").append(bytes.length);
+        if (body != null) head.append("\r\nContent-Type: application/json");
+        out.write(head.append("\r\n\r\n").toString().getBytes(StandardCharsets.US_ASCII));
+        out.write(bytes);
+        out.flush();
+    }
+
+    private DataObject ready() {
+        DataArray unavailableGuilds = DataArray.empty();
+        guilds.keySet().forEach(guildId -> unavailableGuilds.add(DataObject.empty()
+                .put("id", Long.toUnsignedString(guildId))
+                .put("unavailable", true)));
+        return DataObject.empty()
+                .put("v", 10)
+                .put("user", user(BOT_ID, "Verifier", true))
+                .put("guilds", unavailableGuilds)
+                .put("session_id", "fake-session")
+                .put("resume_gateway_url", getGatewayUrl())
+                .put("application", DataObject.empty()
+                        .put("id", Long.toUnsignedString(BOT_ID))
+                        .put("flags", 0))
+                .put("private_channels", DataArray.empty())
+                .put("relationships", DataArray.empty())
+                .put("presences", DataArray.empty());
+    }
+
+    private DataObject guild(FakeGuild guild) {
+        DataArray roles = DataArray.empty();
+        int position = 0;
+        for (Map.Entry<Long, String> role : guild.getRoles().entrySet()) {
+            roles.add(DataObject.empty()
+                    .put("id", Long.toUnsignedString(role.getKey()))
+                    .put("name", role.getValue())
+                    .put("color", 0)
+                    .put("hoist", false)
+                    .put("position", position++)
+                    .put("permissions", "0")
+                    .put("managed", false)
+                    .put("mentionable", false)
+                    .put("flags", 0));
+        }
+        DataArray members = members(guild);
+        return DataObject.empty()
+                .put("id", Long.toUnsignedString(guild.getId()))
+                .put("name", "Guild " + guild.getId())
+                .putNull("icon")
+                .putNull("splash")
+                .putNull("banner")
+                .putNull("description")
+                .put("owner_id", Long.toUnsignedString(BOT_ID))
+                .putNull("afk_channel_id")
+                .put("afk_timeout", 300)
+                .put("verification_level", 0)
+                .put("default_message_notifications", 0)
+                .put("explicit_content_filter", 0)
+                .put("mfa_level", 0)
+                .put("nsfw_level", 0)
+                .put("premium_tier", 0)
+                .put("preferred_locale", "en-US")
+                .putNull("system_channel_id")
+                .put("features", DataArray.empty())
+                .put("roles", roles)
+                .put("emojis", DataArray.empty())
+                .put("stickers", DataArray.empty())
+                .put("channels", DataArray.empty().add(DataObject.empty()
+                        .put("id", Long.toUnsignedString(guild.getChannelId()))
+                        .put("type", 0)
+                        .put("name", "verification")
+                        .put("position", 0)
+                        .put("permission_overwrites", DataArray.empty())
+                        .put("nsfw", false)
+                        .put("rate_limit_per_user", 0)
+                        .put("flags", 0)))
+                .put("threads", DataArray.empty())
+                .put("members", members)
+                .put("member_count", members.length())
+                .put("large", false)
+                .put("unavailable", false)
+                .put("joined_at", TIMESTAMP)
+                .put("presences", DataArray.empty())
+                .put("voice_states", DataArray.empty())
+                .put("stage_instances", DataArray.empty())
+                .put("guild_scheduled_events", DataArray.empty());
+    }
+
+    private DataArray members(FakeGuild guild) {
+        DataArray members = DataArray.empty()
+                .add(member(BOT_ID, "Verifier", true, Collections.emptyList()));
+        guild.getMembers().forEach(member -> members.add(member(member)));
+        return members;
+    }
+
+    private static DataObject member(FakeGuild.FakeMember member) {
+        return member(member.getId(), member.getName(), false, member.getRoleIds());
+    }
+
+    private static DataObject member(long id, String name, boolean bot, List<Long> roleIds) {
+        DataArray roles = DataArray.empty();
+        roleIds.forEach(roleId -> roles.add(Long.toUnsignedString(roleId)));
+        return DataObject.empty()
+                .put("user", user(id, name, bot))
+                .put("roles", roles)
+                .put("joined_at", TIMESTAMP)
+                .putNull("nick")
+                .putNull("avatar")
+                .putNull("premium_since")
+                .put("deaf", false)
+                .put("mute", false)
+                .put("pending", false)
+                .put("flags", 0);
+    }
+
+    private static DataObject user(long id, String name, boolean bot) {
+        return DataObject.empty()
+                .put("id", Long.toUnsignedString(id))
+                .put("username", name)
+                .put("discriminator", "0000")
+                .putNull("global_name")
+                .putNull("avatar")
+                .put("bot", bot)
+                .put("flags", 0)
+                .put("public_flags", 0);
+    }
+
+    private static DataObject message(long id, long channelId, DataObject author, String content) {
+        return DataObject.empty()
+                .put("id", Long.toUnsignedString(id))
+                .put("channel_id", Long.toUnsignedString(channelId))
+                .put("author", author)
+                .put("content", content)
+                .put("timestamp", TIMESTAMP)
+                .putNull("edited_timestamp")
+                .put("tts", false)
+                .put("mention_everyone", false)
+                .put("mentions", DataArray.empty())
+                .put("mention_roles", DataArray.empty())
+                .put("attachments", DataArray.empty())
+                .put("embeds", DataArray.empty())
+                .put("components", DataArray.empty())
+                .put("pinned", false)
+                .put("type", 0)
+                .put("flags", 0);
+    }
+
+    private record HttpRequest(String method, String target, Map<String, String> headers, byte[] body) {
+
+        private static HttpRequest read(InputStream in) throws IOException {
+            String requestLine = readLine(in);
+            if (requestLine == null || requestLine.isEmpty()) return null;
+            String[] parts = requestLine.split(" ");
+
+            Map<String, String> headers = new HashMap<>();
+            String line;
+            while ((line = readLine(in)) != null && !line.isEmpty()) {
+                int separator = line.indexOf(':');
+                headers.put(line.substring(0, separator).trim().toLowerCase(Locale.ROOT),
+                        line.substring(separator + 1).trim());
+            }
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            if ("chunked".equalsIgnoreCase(headers.get("transfer-encoding"))) {
+                int chunkLength;
+                while ((chunkLength = Integer.parseInt(readLine(in).split(";")[0].trim(), 16)) > 0) {
+                    body.write(in.readNBytes(chunkLength));
+                    readLine(in);
+                }
+                readLine(in);
+            } else if (headers.containsKey("content-length")) {
+                body.write(in.readNBytes(Integer.parseInt(headers.get("content-length"))));
+            }
+            return new HttpRequest(parts[0], parts[1], headers, body.toByteArray());
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            StringBuilder line = new StringBuilder();
+            int read;
+            while ((read = in.read()) != -1) {
+                if (read == '\n') return line.toString();
+                if (read != '\r') line.append((char) read);
+            }
+            return line.isEmpty() ? null : line.toString();
+        }
+
+    }
+
+    private class Gateway {
+
+        private final InputStream in;
+        private final OutputStream out;
+        private final Deflater deflater;
+        private final AtomicInteger sequence = new AtomicInteger();
+
+        private Gateway(InputStream in, OutputStream out, boolean compress) {
+            this.in = in;
+            this.out = out;
+            this.deflater = compress ? new Deflater() : null;
+        }
+
+        private void open(String key) throws IOException {
+            String accept;
+            try {
+                accept = Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-1")
+                        .digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.US_ASCII)));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            out.write(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n" +
+                    "Sec-WebSocket-Accept: " + accept + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            send(DataObject.empty()
+                    .put("op", 10)
+                    .putNull("s")
+                    .putNull("t")
+                    .put("d", DataObject.empty().put("heartbeat_interval", 41250)));
+            try {
+                receive();
+            } finally {
+                if (gateway == this) gateway = null;
+            }
+        }
+
+        private void receive() throws IOException {
+            while (true) {
+                int first = in.read();
+                int second = in.read();
+                if (first == -1 || second == -1) return;
+                int opcode = first & 0x0F;
+                long length = second & 0x7F;
+                if (length == 126) length = readNumber(2);
+                else if (length == 127) length = readNumber(8);
+                byte[] mask = (second & 0x80) != 0 ? in.readNBytes(4) : null;
+                byte[] payload = in.readNBytes((int) length);
+                if (mask != null) {
+                    for (int i = 0; i < payload.length; i++) payload[i] ^= mask[i % 4];
+                }
+
+                switch (opcode) {
+                    case 0x1, 0x2 -> handle(DataObject.fromJson(payload));
+                    case 0x8 -> {
+                        writeFrame(0x8, payload);
+                        return;
+                    }
+                    case 0x9 -> writeFrame(0xA, payload);
+                    default -> {
+                    }
+                }
+            }
+        }
+
+        private long readNumber(int bytes) throws IOException {
+            long number = 0;
+            for (int i = 0; i < bytes; i++) number = (number << 8) | in.read();
+            return number;
+        }
+
+        private void handle(DataObject payload) throws IOException {
+            switch (payload.getInt("op")) {
+                case 1 -> send(DataObject.empty().put("op", 11));
+                case 2 -> {
+                    gateway = this;
+                    dispatch("READY", ready());
+                    guilds.values().forEach(guild -> dispatch("GUILD_CREATE", guild(guild)));
+                }
+                case 8 -> {
+                    DataObject request = payload.getObject("d");
+                    FakeGuild guild = guilds.get(request.getUnsignedLong("guild_id"));
+                    if (guild == null) return;
+                    DataObject chunk = DataObject.empty()
+                            .put("guild_id", Long.toUnsignedString(guild.getId()))
+                            .put("members", members(guild))
+                            .put("chunk_index", 0)
+                            .put("chunk_count", 1);
+                    request.opt("nonce").ifPresent(nonce -> chunk.put("nonce", nonce));
+                    dispatch("GUILD_MEMBERS_CHUNK", chunk);
+                }
+                default -> {
+                }
+            }
+        }
+
+        private void dispatch(String type, DataObject data) {
+            try {
+                send(DataObject.empty()
+                        .put("op", 0)
+                        .put("t", type)
+                        .put("s", sequence.incrementAndGet())
+                        .put("d", data));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private synchronized void send(DataObject payload) throws IOException {
+            byte[] json = payload.toJson();
+            if (deflater == null) {
+                writeFrame(0x1, json);
+                return;
+            }
+
+            deflater.setInput(json);
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int length;
+            do {
+                length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                compressed.write(buffer, 0, length);
+            } while (length == buffer.length);
+            writeFrame(0x2, compressed.toByteArray());
+        }
+
+        private synchronized void writeFrame(int opcode, byte[] payload) throws IOException {
+            out.write(0x80 | opcode);
+            if (payload.length < 126) {
+                out.write(payload.length);
+            } else if (payload.length <= 0xFFFF) {
+                out.write(126);
+                out.write(payload.length >>> 8);
+                out.write(payload.length & 0xFF);
+            } else {
+                out.write(127);
+                for (int i = 7; i >= 0; i--) out.write((int) ((long) payload.length >>> (i * 8)) & 0xFF);
+            }
+            out.write(payload);
+            out.flush();
+        }
+
+    }
+
+}
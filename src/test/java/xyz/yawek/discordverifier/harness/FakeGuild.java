@@ -0,0 +1,108 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.harness;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class FakeGuild {
+
+    private final long id;
+    private final long channelId;
+    private final Map<Long, String> roles = new LinkedHashMap<>();
+    private final Map<Long, FakeMember> members = new ConcurrentHashMap<>();
+
+    public FakeGuild(long id, long channelId) {
+        this.id = id;
+        this.channelId = channelId;
+        roles.put(id, "@everyone");
+    }
+
+    public FakeGuild role(long roleId, String name) {
+        roles.put(roleId, name);
+        return this;
+    }
+
+    public FakeGuild member(long memberId, String name, Long... roleIds) {
+        FakeMember member = new FakeMember(memberId, name);
+        member.roleIds.addAll(List.of(roleIds));
+        members.put(memberId, member);
+        return this;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getChannelId() {
+        return channelId;
+    }
+
+    public Map<Long, String> getRoles() {
+        return Collections.unmodifiableMap(roles);
+    }
+
+    public Collection<FakeMember> getMembers() {
+        return Collections.unmodifiableCollection(members.values());
+    }
+
+    public FakeMember getMember(long memberId) {
+        return members.get(memberId);
+    }
+
+    public static class FakeMember {
+
+        private final long id;
+        private final String name;
+        private final Set<Long> roleIds = ConcurrentHashMap.newKeySet();
+
+        private FakeMember(long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<Long> getRoleIds() {
+            return new ArrayList<>(roleIds);
+        }
+
+        public void addRole(long roleId) {
+            roleIds.add(roleId);
+        }
+
+        public void removeRole(long roleId) {
+            roleIds.remove(roleId);
+        }
+
+    }
+
+}
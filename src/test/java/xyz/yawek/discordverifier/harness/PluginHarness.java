@@ -0,0 +1,179 @@
+/*
+ * This file is part of DiscordVerifier, licensed under GNU GPLv3 license.
+ * Copyright (C) 2022 yawek9
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package xyz.yawek.discordverifier.harness;
+
+import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
+import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
+import com.velocitypowered.api.proxy.ProxyServer;
+import net.luckperms.api.LuckPerms;
+import net.luckperms.api.LuckPermsProvider;
+import net.luckperms.api.model.user.User;
+import org.slf4j.LoggerFactory;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+import xyz.yawek.discordverifier.DiscordVerifier;
+import xyz.yawek.discordverifier.data.DataProvider;
+import xyz.yawek.discordverifier.user.VerifiableUser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the whole plugin against a {@link FakeDiscordServer}, with Velocity and LuckPerms mocked
+ * and a SQLite database in the given data directory.
+ */
+public class PluginHarness implements AutoCloseable {
+
+    private final DiscordVerifier verifier;
+
+    private PluginHarness(DiscordVerifier verifier) {
+        this.verifier = verifier;
+    }
+
+    public static PluginHarness start(FakeDiscordServer server, FakeGuild guild, Path dataDirectory)
+            throws Exception {
+        writeConfig(server, guild, dataDirectory);
+        registerLuckPerms();
+
+        DiscordVerifier verifier = new DiscordVerifier(mock(ProxyServer.class, RETURNS_DEEP_STUBS),
+                LoggerFactory.getLogger("DiscordVerifier"), dataDirectory);
+        verifier.onInitialize(new ProxyInitializeEvent());
+        if (!await(() -> verifier.getDiscordManager().isReady() && verifier.getLinkIndex().isLoaded(),
+                30, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("The plugin did not connect to the fake Discord server.");
+        }
+        return new PluginHarness(verifier);
+    }
+
+    public DiscordVerifier getVerifier() {
+        return verifier;
+    }
+
+    public UUID link(FakeGuild.FakeMember member) {
+        UUID uuid = store(member);
+        verifier.getDiscordManager().addLink(Long.toUnsignedString(member.getId()), uuid);
+        return uuid;
+    }
+
+    /**
+     * Stores the member as linked in the database only, as if it was linked by another proxy.
+     */
+    public UUID store(FakeGuild.FakeMember member) {
+        UUID uuid = UUID.nameUUIDFromBytes(("member:" + member.getId()).getBytes(StandardCharsets.UTF_8));
+        String memberId = Long.toUnsignedString(member.getId());
+
+        DataProvider dataProvider = verifier.getDataProvider();
+        dataProvider.updateUserIdentity(uuid, member.getName());
+        dataProvider.updateUser(VerifiableUser.builder(uuid)
+                .lastNickname(member.getName())
+                .discordId(memberId)
+                .discordName(member.getName())
+                .verified(true)
+                .build());
+        return uuid;
+    }
+
+    public static boolean await(BooleanSupplier condition, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) return false;
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        verifier.onShutdown(new ProxyShutdownEvent());
+    }
+
+    private static void writeConfig(FakeDiscordServer server, FakeGuild guild, Path dataDirectory)
+            throws IOException {
+        DumperOptions options = new DumperOptions();
+        options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+        Yaml yaml = new Yaml(options);
+
+        Map<String, Object> config;
+        try (InputStream inputStream = DiscordVerifier.class.getClassLoader()
+                .getResourceAsStream("config.yml")) {
+            config = yaml.load(inputStream);
+        }
+        set(config, "discord.token", "fake-token");
+        set(config, "discord.api-url", server.getApiUrl());
+        set(config, "discord.gateway-url", server.getGatewayUrl());
+        set(config, "discord.guild-id", Long.toUnsignedString(guild.getId()));
+        set(config, "discord.channel-id", Long.toUnsignedString(guild.getChannelId()));
+        set(config, "discord.delete-message-after", 1);
+        set(config, "discord.event-workers.queue-size", 100000);
+        set(config, "discord.rate-limit.channel.capacity", 100000);
+        set(config, "discord.rate-limit.channel.refill-per-second", 100000.0);
+        set(config, "discord.sync.group.verification-permissions", Collections.emptyList());
+        set(config, "discord.sync.debounce.delay", 10);
+        set(config, "discord.sync.debounce.max-delay", 100);
+        set(config, "discord.sync.periodic.period", 0);
+        set(config, "discord.sync.reconcile.rest-per-second", 0.0);
+
+        Files.createDirectories(dataDirectory);
+        try (Writer writer = Files.newBufferedWriter(dataDirectory.resolve("config.yml"))) {
+            yaml.dump(config, writer);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void set(Map<String, Object> config, String key, Object value) {
+        String[] path = key.split("\\.");
+        Map<String, Object> section = config;
+        for (int i = 0; i < path.length - 1; i++) {
+            section = (Map<String, Object>) section.get(path[i]);
+        }
+        section.put(path[path.length - 1], value);
+    }
+
+    private static void registerLuckPerms() throws ReflectiveOperationException {
+        LuckPerms luckPerms = mock(LuckPerms.class, RETURNS_DEEP_STUBS);
+        User user = mock(User.class, RETURNS_DEEP_STUBS);
+        when(user.getNodes()).thenReturn(Collections.emptyList());
+        when(luckPerms.getUserManager().loadUser(any(UUID.class)))
+                .thenReturn(CompletableFuture.completedFuture(user));
+        when(luckPerms.getUserManager().saveUser(any(User.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        Method register = LuckPermsProvider.class.getDeclaredMethod("register", LuckPerms.class);
+        register.setAccessible(true);
+        register.invoke(null, luckPerms);
+    }
+
+}